@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Precomputed rollups over countries, so whole-world views cost the same no matter
+// how many countries are loaded.
+// For every metric, sex and year it keeps mean, min, max and quartiles across all
+// countries (group 0) and across the countries of each region (group 1 + region).
+// The cube is computed in parallel when the data is loaded; after an in-place
+// change only the affected cells are recomputed through update().
+public final class AggregateCube {
+
+    public static final int ALL_COUNTRIES = 0;
+
+    private static final int STATISTICS = Statistic.values().length;
+
+    private final DataStore store;
+    private final int[][] groupMembers;
+    private final double[] values;
+
+    private AggregateCube(DataStore store) {
+        this.store = store;
+
+        // Group 0 holds every country, group 1 + r the countries of region r
+        int[] groupSizes = new int[1 + store.regionCount()];
+        groupSizes[ALL_COUNTRIES] = store.countryCount();
+        for (int c = 0; c < store.countryCount(); c++) {
+            if (store.countryRegion(c) >= 0) {
+                groupSizes[1 + store.countryRegion(c)]++;
+            }
+        }
+        groupMembers = new int[groupSizes.length][];
+        for (int g = 0; g < groupSizes.length; g++) {
+            groupMembers[g] = new int[groupSizes[g]];
+        }
+        int[] filled = new int[groupSizes.length];
+        for (int c = 0; c < store.countryCount(); c++) {
+            groupMembers[ALL_COUNTRIES][filled[ALL_COUNTRIES]++] = c;
+            int region = store.countryRegion(c);
+            if (region >= 0) {
+                groupMembers[1 + region][filled[1 + region]++] = c;
+            }
+        }
+
+        values = new double[groupMembers.length * STATISTICS * store.metricCount() * store.sexCount() * store.yearCount()];
+    }
+
+    public static AggregateCube compute(DataStore store) {
+        AggregateCube cube = new AggregateCube(store);
+        int series = store.metricCount() * store.sexCount();
+
+        // One task per (group, metric, sex); each fills its own cells for every year
+        IntStream.range(0, cube.groupMembers.length * series).parallel().forEach(task -> {
+            int group = task / series;
+            int metric = (task % series) / store.sexCount();
+            int sex = task % store.sexCount();
+            double[] scratch = new double[cube.groupMembers[group].length];
+            for (int y = 0; y < store.yearCount(); y++) {
+                cube.computeCell(group, metric, sex, y, scratch);
+            }
+        });
+        return cube;
+    }
+
+    public DataStore getStore() {
+        return store;
+    }
+
+    public int groupCount() {
+        return groupMembers.length;
+    }
+
+    // Group of a region, for use with get()
+    public static int regionGroup(int region) {
+        return 1 + region;
+    }
+
+    public double get(int group, Statistic statistic, int metric, int sex, int yearIndex) {
+        return values[offset(group, statistic.ordinal(), metric, sex, yearIndex)];
+    }
+
+    public double global(Statistic statistic, int metric, int sex, int yearIndex) {
+        return get(ALL_COUNTRIES, statistic, metric, sex, yearIndex);
+    }
+
+    public double region(int region, Statistic statistic, int metric, int sex, int yearIndex) {
+        return get(regionGroup(region), statistic, metric, sex, yearIndex);
+    }
+
+    // Recomputes one (metric, sex, year) cell after the store's value changed for some country
+    public void update(int country, int metric, int sex, int yearIndex) {
+        double[] scratch = new double[groupMembers[ALL_COUNTRIES].length];
+        computeCell(ALL_COUNTRIES, metric, sex, yearIndex, scratch);
+        int region = store.countryRegion(country);
+        if (region >= 0) {
+            computeCell(regionGroup(region), metric, sex, yearIndex, scratch);
+        }
+    }
+
+    // Recomputes every cell touched by a batch, each once however many countries changed in it
+    public void update(CellUpdates updates) {
+        double[] scratch = new double[groupMembers[ALL_COUNTRIES].length];
+        boolean[] done = new boolean[values.length / STATISTICS];
+        int cellsPerGroup = store.metricCount() * store.sexCount() * store.yearCount();
+        for (int i = 0; i < updates.size(); i++) {
+            int cell = (updates.metric(i) * store.sexCount() + updates.sex(i)) * store.yearCount() + updates.yearIndex(i);
+            if (!done[cell]) {
+                done[cell] = true;
+                computeCell(ALL_COUNTRIES, updates.metric(i), updates.sex(i), updates.yearIndex(i), scratch);
+            }
+            int region = store.countryRegion(updates.country(i));
+            if (region >= 0 && !done[regionGroup(region) * cellsPerGroup + cell]) {
+                done[regionGroup(region) * cellsPerGroup + cell] = true;
+                computeCell(regionGroup(region), updates.metric(i), updates.sex(i), updates.yearIndex(i), scratch);
+            }
+        }
+    }
+
+    private void computeCell(int group, int metric, int sex, int yearIndex, double[] scratch) {
+        int[] members = groupMembers[group];
+        int count = 0;
+        double sum = 0;
+        for (int country : members) {
+            double value = store.value(country, metric, sex, yearIndex);
+            if (!Double.isNaN(value)) {
+                scratch[count++] = value;
+                sum += value;
+            }
+        }
+
+        int base = offset(group, 0, metric, sex, yearIndex);
+        int stride = statisticStride();
+        if (count == 0) {
+            for (int s = 0; s < STATISTICS; s++) {
+                values[base + s * stride] = Double.NaN;
+            }
+            values[base + Statistic.COUNT.ordinal() * stride] = 0;
+            return;
+        }
+        Arrays.sort(scratch, 0, count);
+        values[base + Statistic.MEAN.ordinal() * stride] = sum / count;
+        values[base + Statistic.MIN.ordinal() * stride] = scratch[0];
+        values[base + Statistic.MAX.ordinal() * stride] = scratch[count - 1];
+        values[base + Statistic.P25.ordinal() * stride] = percentile(scratch, count, 0.25);
+        values[base + Statistic.MEDIAN.ordinal() * stride] = percentile(scratch, count, 0.5);
+        values[base + Statistic.P75.ordinal() * stride] = percentile(scratch, count, 0.75);
+        values[base + Statistic.COUNT.ordinal() * stride] = count;
+    }
+
+    // Linear interpolation between the closest ranks of sorted values
+    private static double percentile(double[] sorted, int count, double fraction) {
+        double rank = fraction * (count - 1);
+        int lower = (int) rank;
+        int upper = Math.min(lower + 1, count - 1);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private int statisticStride() {
+        return store.metricCount() * store.sexCount() * store.yearCount();
+    }
+
+    private int offset(int group, int statistic, int metric, int sex, int yearIndex) {
+        return (((group * STATISTICS + statistic) * store.metricCount() + metric) * store.sexCount() + sex)
+                * store.yearCount() + yearIndex;
+    }
+}
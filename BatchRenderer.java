@@ -0,0 +1,272 @@
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Renders charts to image files without a JFrame, for reports.
+// Every country x chart type combination is rendered on a fixed thread pool,
+// and the run reports its throughput in charts per second.
+//
+//   java -Djava.awt.headless=true BatchRenderer --out charts [--data file] [--threads N]
+//        [--format png,svg] [--size 800x600] [--types bar,line,pie,scatter]
+//
+// SVG output uses JFreeSVG (org.jfree.svg.SVGGraphics2D), which has to be on the classpath.
+public final class BatchRenderer {
+
+    public enum Format {
+        PNG, SVG
+    }
+
+    private final ChartBuilder builder;
+    private final int threads;
+    private final int width;
+    private final int height;
+
+    public BatchRenderer(ChartBuilder builder, int threads, int width, int height) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.builder = builder;
+        this.threads = threads;
+        this.width = width;
+        this.height = height;
+    }
+
+    // Renders every country (plus All Countries) for each chart type into outputDir
+    public Result renderAll(Path outputDir, Set<ChartType> types, Set<Format> formats) throws IOException, InterruptedException {
+        DataStore store = builder.getStore();
+        List<String> countries = new ArrayList<>();
+        for (int i = 0; i < store.countryCount(); i++) {
+            countries.add(store.countryName(i));
+        }
+        countries.add(ChartBuilder.ALL_COUNTRIES);
+        return render(outputDir, countries, types, formats);
+    }
+
+    public Result render(Path outputDir, List<String> countries, Set<ChartType> types, Set<Format> formats)
+            throws IOException, InterruptedException {
+        if (formats.contains(Format.SVG) && !supports(Format.SVG)) {
+            throw new IllegalStateException("SVG output needs JFreeSVG (org.jfree.svg) on the classpath");
+        }
+        Files.createDirectories(outputDir);
+
+        AtomicInteger files = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "chart-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (String country : countries) {
+                for (ChartType type : types) {
+                    tasks.add(pool.submit(() -> {
+                        JFreeChart chart = builder.createChart(country, type);
+                        String baseName = fileName(country) + "-" + type.id();
+                        for (Format format : formats) {
+                            Path file = outputDir.resolve(baseName + "." + format.name().toLowerCase(Locale.ROOT));
+                            write(chart, format, file);
+                            files.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("Rendering failed", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(countries.size() * types.size(), files.get(), elapsed);
+    }
+
+    private void write(JFreeChart chart, Format format, Path file) throws IOException {
+        Files.write(file, encode(chart, format, width, height));
+    }
+
+    // Renders a chart into the bytes of an image file
+    static byte[] encode(JFreeChart chart, Format format, int width, int height) throws IOException {
+        DownsampledXYDataset.resample(chart, width);
+        switch (format) {
+            case PNG:
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                ChartUtils.writeChartAsPNG(out, chart, width, height);
+                return out.toByteArray();
+            case SVG:
+                return SvgSupport.render(chart, width, height).getBytes(StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    static boolean supports(Format format) {
+        return format != Format.SVG || SvgSupport.AVAILABLE;
+    }
+
+    // Country names become file names, e.g. "United States of America" -> "United_States_of_America"
+    static String fileName(String country) {
+        return country.replaceAll("[^A-Za-z0-9-]+", "_");
+    }
+
+    // Outcome of a batch run
+    public static final class Result {
+        private final int charts;
+        private final int files;
+        private final long elapsedNanos;
+
+        Result(int charts, int files, long elapsedNanos) {
+            this.charts = charts;
+            this.files = files;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int charts() {
+            return charts;
+        }
+
+        public int files() {
+            return files;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double chartsPerSecond() {
+            return elapsedNanos == 0 ? 0 : charts / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Rendered %d charts (%d files) in %d ms: %.1f charts/s",
+                    charts, files, elapsedNanos / 1_000_000, chartsPerSecond());
+        }
+    }
+
+    // JFreeSVG is optional, so it is looked up reflectively instead of being a compile-time dependency
+    private static final class SvgSupport {
+        static final boolean AVAILABLE;
+        private static final Constructor<?> CONSTRUCTOR;
+        private static final Method DOCUMENT;
+
+        static {
+            Constructor<?> constructor = null;
+            Method document = null;
+            try {
+                Class<?> graphics = Class.forName("org.jfree.svg.SVGGraphics2D");
+                try {
+                    constructor = graphics.getConstructor(double.class, double.class); // JFreeSVG 5
+                } catch (NoSuchMethodException e) {
+                    constructor = graphics.getConstructor(int.class, int.class);
+                }
+                document = graphics.getMethod("getSVGDocument");
+            } catch (ReflectiveOperationException e) {
+                // Not on the classpath
+            }
+            CONSTRUCTOR = constructor;
+            DOCUMENT = document;
+            AVAILABLE = constructor != null && document != null;
+        }
+
+        static String render(JFreeChart chart, int width, int height) throws IOException {
+            try {
+                Graphics2D g2 = CONSTRUCTOR.getParameterTypes()[0] == double.class
+                        ? (Graphics2D) CONSTRUCTOR.newInstance((double) width, (double) height)
+                        : (Graphics2D) CONSTRUCTOR.newInstance(width, height);
+                chart.draw(g2, new Rectangle(width, height));
+                return (String) DOCUMENT.invoke(g2);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("SVG rendering failed", e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        Path output = null;
+        Path data = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int width = 800;
+        int height = 600;
+        Set<Format> formats = EnumSet.of(Format.PNG);
+        Set<ChartType> types = EnumSet.allOf(ChartType.class);
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                System.err.println("Missing value for " + args[i]);
+                System.exit(2);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--out":
+                    output = Paths.get(value);
+                    break;
+                case "--data":
+                    data = Paths.get(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                    break;
+                case "--format":
+                    formats = EnumSet.noneOf(Format.class);
+                    for (String format : value.split(",")) {
+                        formats.add(Format.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "--types":
+                    types = EnumSet.noneOf(ChartType.class);
+                    for (String type : value.split(",")) {
+                        types.add(ChartType.parse(type));
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+            i++;
+        }
+        if (output == null) {
+            System.err.println("Usage: java BatchRenderer --out <dir> [--data <file>] [--threads N] "
+                    + "[--format png,svg] [--size 800x600] [--types bar,line,pie,scatter]");
+            System.exit(2);
+        }
+
+        DataStore store = data != null ? DataStore.open(data) : SampleData.load();
+        BatchRenderer renderer = new BatchRenderer(new ChartBuilder(store), threads, width, height);
+        Result result = renderer.renderAll(output, types, formats);
+        System.out.println(result + " on " + threads + " threads");
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+// A batch of changed values for cells that already exist in a DataStore.
+// Kept as primitive columns; apply() writes them into the store in one go.
+public final class CellUpdates {
+
+    private final DataStore store;
+    private int[] countries = new int[64];
+    private int[] metrics = new int[64];
+    private int[] sexes = new int[64];
+    private int[] yearIndexes = new int[64];
+    private double[] values = new double[64];
+    private int size;
+    private volatile boolean applied;
+
+    public CellUpdates(DataStore store) {
+        this.store = store;
+    }
+
+    // The store whose indices the cells refer to
+    public DataStore store() {
+        return store;
+    }
+
+    public void add(int country, int metric, int sex, int yearIndex, double value) {
+        if (size == values.length) {
+            int capacity = size * 2;
+            countries = Arrays.copyOf(countries, capacity);
+            metrics = Arrays.copyOf(metrics, capacity);
+            sexes = Arrays.copyOf(sexes, capacity);
+            yearIndexes = Arrays.copyOf(yearIndexes, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        countries[size] = country;
+        metrics[size] = metric;
+        sexes[size] = sex;
+        yearIndexes[size] = yearIndex;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int country(int i) {
+        return countries[i];
+    }
+
+    public int metric(int i) {
+        return metrics[i];
+    }
+
+    public int sex(int i) {
+        return sexes[i];
+    }
+
+    public int yearIndex(int i) {
+        return yearIndexes[i];
+    }
+
+    public double value(int i) {
+        return values[i];
+    }
+
+    // Writes the values under the store's write lock; callers that also update derived data
+    // hold the lock around both
+    public void apply() {
+        Lock write = store.lock().writeLock();
+        write.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                store.setValue(countries[i], metrics[i], sexes[i], yearIndexes[i], values[i]);
+            }
+            applied = true;
+        } finally {
+            write.unlock();
+        }
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    // Adds the changed values, by name, to a builder for a new store
+    void addTo(DataStore.Builder builder) {
+        for (int i = 0; i < size; i++) {
+            builder.add(store.countryName(countries[i]), store.metricName(metrics[i]), store.sexName(sexes[i]),
+                    store.year(yearIndexes[i]), values[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return size + " changed values";
+    }
+}
@@ -0,0 +1,907 @@
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.SeriesRenderingOrder;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.general.AbstractDataset;
+import org.jfree.data.xy.DefaultXYDataset;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+// Builds the dashboard's charts from a DataStore, titled and labelled from its Indicator.
+// Has no Swing dependencies, so it is shared by the dashboard and the headless batch renderer.
+public class ChartBuilder {
+
+    public static final String ALL_COUNTRIES = "All Countries";
+
+    // Series of the All Countries line chart, per metric
+    private static final Statistic[] LINE_STATISTICS = {Statistic.MEAN, Statistic.MIN, Statistic.MAX};
+
+    private final DataStore store;
+    private final AggregateCube aggregates;
+    private final Indicator indicator;
+
+    // Computes the rollups for the All Countries views up front
+    public ChartBuilder(DataStore store) {
+        this(store, Indicator.LIFE_EXPECTANCY);
+    }
+
+    public ChartBuilder(DataStore store, Indicator indicator) {
+        this(store, AggregateCube.compute(store), indicator);
+    }
+
+    public ChartBuilder(DataStore store, AggregateCube aggregates) {
+        this(store, aggregates, Indicator.LIFE_EXPECTANCY);
+    }
+
+    public ChartBuilder(DataStore store, AggregateCube aggregates, Indicator indicator) {
+        this.store = store;
+        this.aggregates = aggregates;
+        this.indicator = indicator;
+    }
+
+    public DataStore getStore() {
+        return store;
+    }
+
+    public AggregateCube getAggregates() {
+        return aggregates;
+    }
+
+    public Indicator getIndicator() {
+        return indicator;
+    }
+
+    // Builds the chart of the given type for one country or for ALL_COUNTRIES
+    public JFreeChart createChart(String country, ChartType type) {
+        return createChart(country, type, store.defaultSex());
+    }
+
+    // The same for one sex of the store; charts of another sex than the default name it in the title
+    public JFreeChart createChart(String country, ChartType type, int sex) {
+        if (sex < 0 || sex >= store.sexCount()) {
+            throw new IllegalArgumentException("Unknown sex: " + sex);
+        }
+        boolean allCountries = country.equals(ALL_COUNTRIES);
+        if (!allCountries && store.countryIndex(country) < 0) {
+            throw new IllegalArgumentException("Unknown country: " + country);
+        }
+        switch (type) {
+            case BAR:
+                return allCountries ? createAllCountriesBarChart(sex) : createCountryBarChart(country, sex);
+            case LINE:
+                return allCountries ? createAllCountriesLineChart(sex) : createCountryLineChart(country, sex);
+            case PIE:
+                return allCountries ? createAllCountriesPieChart(sex) : createCountryPieChart(country, sex);
+            case SCATTER:
+                return allCountries ? createAllCountriesScatterPlot(sex) : createCountryScatterPlot(country, sex);
+            case COMPARE:
+                return createCompareChart(null, all(store.countryCount()), all(store.yearCount()), sex,
+                        allCountries ? -1 : store.countryIndex(country));
+            default:
+                throw new IllegalArgumentException("Unknown chart type: " + type);
+        }
+    }
+
+    // Builds the chart of the given type for the rows of a query, e.g. the countries of a region
+    // or income group; label names the selection in the title. Values are the mean (and for the
+    // line chart the range) across the selected countries, in the rows' chart sex.
+    public JFreeChart createChart(String label, RowSet rows, ChartType type) {
+        if (rows.store() != store) {
+            throw new IllegalArgumentException("Rows of another store");
+        }
+        switch (type) {
+            case BAR:
+                return createGroupBarChart(label, rows);
+            case LINE:
+                return createGroupLineChart(label, rows);
+            case PIE:
+                return createGroupPieChart(label, rows);
+            case SCATTER:
+                return createGroupScatterPlot(label, rows);
+            case COMPARE:
+                return createCompareChart(label, rows.countries(), rows.years(), rows.chartSex(), -1);
+            default:
+                throw new IllegalArgumentException("Unknown chart type: " + type);
+        }
+    }
+
+    // Pushes changed cells of this builder's store into a chart made by createChart(country, type),
+    // after the store and aggregates were updated. The chart gets a single dataset change event,
+    // so it redraws once per batch. Returns false when the chart has to be rebuilt instead.
+    public boolean update(JFreeChart chart, String country, ChartType type, CellUpdates updates) {
+        return update(chart, country, type, store.defaultSex(), updates);
+    }
+
+    // The same for a chart made by createChart(country, type, sex)
+    public boolean update(JFreeChart chart, String country, ChartType type, int sex, CellUpdates updates) {
+        if (updates.store() != store || type == ChartType.COMPARE) {
+            return false; // The comparison's statistics span all countries, so it is rebuilt
+        }
+        boolean allCountries = country.equals(ALL_COUNTRIES);
+        int countryIndex = allCountries ? -1 : store.countryIndex(country);
+        if (!allCountries && countryIndex < 0) {
+            return false; // A query selection, rebuilt from its rows
+        }
+        int latestYear = store.yearCount() - 1;
+        AbstractDataset dataset = datasetOf(chart);
+
+        dataset.setNotify(false);
+        try {
+            for (int i = 0; i < updates.size(); i++) {
+                if (updates.sex(i) != sex || (!allCountries && updates.country(i) != countryIndex)) {
+                    continue;
+                }
+                if (Double.isNaN(updates.value(i))) {
+                    return false; // Removing points is left to a rebuild
+                }
+                int m = updates.metric(i);
+                int y = updates.yearIndex(i);
+                switch (type) {
+                    case BAR:
+                        double bar = allCountries ? aggregates.global(Statistic.MEAN, m, sex, y) : updates.value(i);
+                        ((DefaultCategoryDataset) dataset).setValue(bar, store.metricName(m), String.valueOf(store.year(y)));
+                        break;
+                    case LINE:
+                        if (allCountries) {
+                            for (int k = 0; k < LINE_STATISTICS.length; k++) {
+                                ((DownsampledXYDataset) dataset).setValue(m * LINE_STATISTICS.length + k, store.year(y),
+                                        aggregates.global(LINE_STATISTICS[k], m, sex, y));
+                            }
+                        } else {
+                            ((DownsampledXYDataset) dataset).setValue(m, store.year(y), updates.value(i));
+                        }
+                        break;
+                    case PIE:
+                        // Entries are folded again, so a value can move in or out of "Other"
+                        FoldedPieDataset pie = (FoldedPieDataset) dataset;
+                        if (!allCountries) {
+                            if (y == 0) {
+                                pie.setEntry(store.metricName(m), updates.value(i));
+                            }
+                        } else if (y == latestYear && store.regionCount() == 0) {
+                            pie.setEntry(store.metricName(m), aggregates.global(Statistic.MEAN, m, sex, latestYear));
+                        } else if (y == latestYear && m == 0 && store.countryRegion(updates.country(i)) >= 0) {
+                            int region = store.countryRegion(updates.country(i));
+                            pie.setEntry(store.regionName(region), aggregates.region(region, Statistic.MEAN, 0, sex, latestYear));
+                        }
+                        break;
+                    case SCATTER:
+                        int series = allCountries ? updates.country(i) * store.metricCount() + m : m;
+                        ((DownsampledXYDataset) dataset).setValue(series, store.year(y), updates.value(i));
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        } finally {
+            dataset.setNotify(true);
+        }
+        return true;
+    }
+
+    // Switches a bar or line chart made by createChart(country, type, sex) to another sex.
+    // The values are rewritten into the chart's own dataset as one change event, so toggling
+    // between the sexes creates no datasets. Returns false when the chart has to be rebuilt.
+    public boolean setSex(JFreeChart chart, String country, ChartType type, int sex) {
+        if (type != ChartType.BAR && type != ChartType.LINE) {
+            return false;
+        }
+        boolean allCountries = country.equals(ALL_COUNTRIES);
+        int countryIndex = allCountries ? -1 : store.countryIndex(country);
+        if (!allCountries && countryIndex < 0) {
+            return false; // A query selection, rebuilt from its rows
+        }
+        long start = System.nanoTime();
+        AbstractDataset dataset = datasetOf(chart);
+        dataset.setNotify(false);
+        try {
+            if (type == ChartType.BAR) {
+                fillBars((DefaultCategoryDataset) dataset, countryIndex, sex);
+            } else if (allCountries) {
+                DownsampledXYDataset lines = (DownsampledXYDataset) dataset;
+                for (int m = 0; m < store.metricCount(); m++) {
+                    for (int k = 0; k < LINE_STATISTICS.length; k++) {
+                        double[][] points = aggregatePoints(LINE_STATISTICS[k], m, sex);
+                        lines.setSeries(m * LINE_STATISTICS.length + k, points[0], points[1]);
+                    }
+                }
+            } else {
+                DownsampledXYDataset lines = (DownsampledXYDataset) dataset;
+                for (int m = 0; m < store.metricCount(); m++) {
+                    double[][] points = seriesPoints(countryIndex, m, sex);
+                    lines.setSeries(m, points[0], points[1]);
+                }
+            }
+        } finally {
+            dataset.setNotify(true);
+        }
+        chart.setTitle(title(type, country, sex));
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+        return true;
+    }
+
+    // Chart for playing the data through its years, one year per frame: the bar chart's metrics
+    // for the country or their means across all countries, or for the scatter plot every country
+    // as a point of life expectancy against HALE. Returns null for the other chart types.
+    public PlaybackChart createPlaybackChart(String country, ChartType type, int sex) {
+        boolean allCountries = country.equals(ALL_COUNTRIES);
+        int countryIndex = allCountries ? -1 : store.countryIndex(country);
+        if (!allCountries && countryIndex < 0) {
+            throw new IllegalArgumentException("Unknown country: " + country);
+        }
+        long start = System.nanoTime();
+        PlaybackChart playback;
+        switch (type) {
+            case BAR:
+                playback = new PlaybackChart.Bars(store, aggregates, countryIndex, sex, title(type, country, sex),
+                        indicator.axisLabel("Value"));
+                break;
+            case SCATTER:
+                int[] metrics = PlaybackChart.pointMetrics(store);
+                String x = store.metricName(metrics[0]);
+                String y = store.metricName(metrics[1]);
+                playback = new PlaybackChart.Points(store, metrics[0], metrics[1], countryIndex, sex,
+                        x + " vs " + y + " across " + store.countryCount() + " Countries" + sexSuffix(sex),
+                        indicator.axisLabel(x), indicator.axisLabel(y));
+                break;
+            default:
+                return null;
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+        return playback;
+    }
+
+    // Titles of the country and All Countries bar, line and scatter charts
+    private String title(ChartType type, String country, int sex) {
+        boolean allCountries = country.equals(ALL_COUNTRIES);
+        String title;
+        switch (type) {
+            case BAR:
+                title = allCountries ? "Average " + indicator.label() + " across " + store.countryCount() + " Countries"
+                        : indicator.label() + " for " + country;
+                break;
+            case LINE:
+                title = allCountries ? indicator.label() + " Trends across " + store.countryCount() + " Countries"
+                        : indicator.label() + " Trends for " + country;
+                break;
+            default:
+                title = indicator.label() + " Scatter Plot for " + country;
+                break;
+        }
+        return title + sexSuffix(sex);
+    }
+
+    // ", Female" for a chart of another sex than the store's default
+    private String sexSuffix(int sex) {
+        return sex == store.defaultSex() ? "" : ", " + store.sexName(sex);
+    }
+
+    // Year axes tick whole years, e.g. "2019" rather than "2.019E3" for a single year, and a line
+    // series with fewer than two points is drawn as a marker, since it has no segment to draw
+    private static JFreeChart yearAxis(JFreeChart chart) {
+        XYPlot plot = chart.getXYPlot();
+        NumberAxis years = (NumberAxis) plot.getDomainAxis();
+        years.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+        years.setNumberFormatOverride(new DecimalFormat("0"));
+        years.setAutoRangeIncludesZero(false);
+        if (plot.getRenderer() instanceof XYLineAndShapeRenderer) {
+            XYLineAndShapeRenderer renderer = (XYLineAndShapeRenderer) plot.getRenderer();
+            for (int series = 0; series < plot.getDataset().getSeriesCount(); series++) {
+                if (plot.getDataset().getItemCount(series) < 2) {
+                    renderer.setSeriesShapesVisible(series, true);
+                }
+            }
+        }
+        return chart;
+    }
+
+    private static AbstractDataset datasetOf(JFreeChart chart) {
+        Plot plot = chart.getPlot();
+        if (plot instanceof CategoryPlot) {
+            return (AbstractDataset) ((CategoryPlot) plot).getDataset();
+        }
+        if (plot instanceof XYPlot) {
+            return (AbstractDataset) ((XYPlot) plot).getDataset();
+        }
+        return (AbstractDataset) ((PiePlot) plot).getDataset();
+    }
+
+    public JFreeChart createCountryBarChart(String country) {
+        return createCountryBarChart(country, store.defaultSex());
+    }
+
+    public JFreeChart createCountryBarChart(String country, int sex) {
+        long start = System.nanoTime();
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+
+        // Populate dataset
+        fillBars(dataset, store.countryIndex(country), sex);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create the chart with labels and legends
+        JFreeChart chart = ChartFactory.createBarChart(
+                title(ChartType.BAR, country, sex),       // Chart title
+                "Year",                                  // X-axis label
+                indicator.axisLabel("Value"),            // Y-axis label
+                dataset,                                 // Dataset
+                PlotOrientation.VERTICAL,                // Chart orientation
+                true,                                    // Include legend
+                true,                                    // Tooltips
+                false                                    // URLs
+        );
+
+        // Customize plot (optional)
+        CategoryPlot plot = chart.getCategoryPlot();
+        plot.setRangeGridlinesVisible(true);  // Show grid lines
+
+        return chart;
+    }
+
+    public JFreeChart createAllCountriesBarChart() {
+        return createAllCountriesBarChart(store.defaultSex());
+    }
+
+    public JFreeChart createAllCountriesBarChart(int sex) {
+        long start = System.nanoTime();
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+
+        // Populate dataset with the mean across countries for each year
+        fillBars(dataset, -1, sex);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create the chart with labels and legends
+        JFreeChart chart = ChartFactory.createBarChart(
+                title(ChartType.BAR, ALL_COUNTRIES, sex),
+                "Year",
+                indicator.axisLabel("Mean Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false
+        );
+
+        // Customize plot (optional)
+        CategoryPlot plot = chart.getCategoryPlot();
+        plot.setRangeGridlinesVisible(true);
+
+        return chart;
+    }
+
+    // Sets a bar per metric and year: the country's values, or the means across countries for -1
+    private void fillBars(DefaultCategoryDataset dataset, int countryIndex, int sex) {
+        double[] values = new double[store.yearCount()];
+        for (int m = 0; m < store.metricCount(); m++) {
+            if (countryIndex >= 0) {
+                store.series(countryIndex, m, sex, values);
+            }
+            for (int i = 0; i < store.yearCount(); i++) {
+                double value = countryIndex >= 0 ? values[i] : aggregates.global(Statistic.MEAN, m, sex, i);
+                dataset.setValue(value, store.metricName(m), String.valueOf(store.year(i)));
+            }
+        }
+    }
+
+    public JFreeChart createCountryLineChart(String country) {
+        return createCountryLineChart(country, store.defaultSex());
+    }
+
+    public JFreeChart createCountryLineChart(String country, int sex) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = createCountrySeries(store.countryIndex(country), sex, DownsampledXYDataset.Method.LTTB);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create chart with labels and legends
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                title(ChartType.LINE, country, sex),               // Chart title
+                "Year",                                            // X-axis label
+                indicator.axisLabel("Value"),                      // Y-axis label
+                dataset,                                           // Dataset
+                PlotOrientation.VERTICAL,                          // Chart orientation
+                true,                                              // Include legend
+                true,                                              // Tooltips
+                false                                              // URLs
+        );
+
+        return yearAxis(chart);
+    }
+
+    public JFreeChart createAllCountriesLineChart() {
+        return createAllCountriesLineChart(store.defaultSex());
+    }
+
+    public JFreeChart createAllCountriesLineChart(int sex) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = new DownsampledXYDataset(DownsampledXYDataset.Method.LTTB);
+
+        // Mean, minimum and maximum across countries for each metric
+        for (int m = 0; m < store.metricCount(); m++) {
+            for (Statistic statistic : LINE_STATISTICS) {
+                String name = store.metricName(m) + (statistic == Statistic.MEAN ? "" : " (" + statistic.name().toLowerCase(Locale.ROOT) + ")");
+                double[][] points = aggregatePoints(statistic, m, sex);
+                dataset.addSeries(name, points[0], points[1]);
+            }
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create chart with labels and legends
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                title(ChartType.LINE, ALL_COUNTRIES, sex),
+                "Year",
+                indicator.axisLabel("Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false
+        );
+
+        return yearAxis(chart);
+    }
+
+    // {years, values} of a statistic across countries, for the years that have one
+    private double[][] aggregatePoints(Statistic statistic, int metric, int sex) {
+        double[] x = new double[store.yearCount()];
+        double[] y = new double[store.yearCount()];
+        int points = 0;
+        for (int j = 0; j < store.yearCount(); j++) {
+            double value = aggregates.global(statistic, metric, sex, j);
+            if (!Double.isNaN(value)) {
+                x[points] = store.year(j);
+                y[points++] = value;
+            }
+        }
+        return new double[][]{Arrays.copyOf(x, points), Arrays.copyOf(y, points)};
+    }
+
+
+    public JFreeChart createCountryPieChart(String country) {
+        return createCountryPieChart(country, store.defaultSex());
+    }
+
+    public JFreeChart createCountryPieChart(String country, int sex) {
+        long start = System.nanoTime();
+        int countryIndex = store.countryIndex(country);
+
+        // Populate dataset with the first year
+        String[] names = new String[store.metricCount()];
+        double[] values = new double[store.metricCount()];
+        for (int m = 0; m < store.metricCount(); m++) {
+            names[m] = store.metricName(m);
+            values[m] = store.value(countryIndex, m, sex, 0);
+        }
+        FoldedPieDataset dataset = new FoldedPieDataset(names, values, FoldedPieDataset.DEFAULT_LIMIT);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create chart with labels and legends
+        JFreeChart chart = ChartFactory.createPieChart(
+                indicator.label() + " Distribution for " + country + sexSuffix(sex),
+                dataset,
+                true,   // Include legend
+                true,   // Tooltips
+                false   // URLs
+        );
+
+        return chart;
+    }
+
+    public JFreeChart createAllCountriesPieChart() {
+        return createAllCountriesPieChart(store.defaultSex());
+    }
+
+    public JFreeChart createAllCountriesPieChart(int sex) {
+        long start = System.nanoTime();
+        int latestYear = store.yearCount() - 1;
+        String[] names;
+        double[] values;
+        String title;
+
+        if (store.regionCount() > 0) {
+            // Mean of the first metric per region, for the latest year; regions without data are left out
+            names = new String[store.regionCount()];
+            values = new double[store.regionCount()];
+            for (int r = 0; r < store.regionCount(); r++) {
+                names[r] = store.regionName(r);
+                values[r] = aggregates.region(r, Statistic.MEAN, 0, sex, latestYear);
+            }
+            title = "Average " + store.metricName(0) + " by Region, " + store.year(latestYear);
+        } else {
+            // Without regions, compare the metric means across all countries
+            names = new String[store.metricCount()];
+            values = new double[store.metricCount()];
+            for (int m = 0; m < store.metricCount(); m++) {
+                names[m] = store.metricName(m);
+                values[m] = aggregates.global(Statistic.MEAN, m, sex, latestYear);
+            }
+            title = "Average " + indicator.label() + " Distribution, " + store.year(latestYear);
+        }
+        FoldedPieDataset dataset = new FoldedPieDataset(names, values, FoldedPieDataset.DEFAULT_LIMIT);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        // Create chart with labels and legends
+        JFreeChart chart = ChartFactory.createPieChart(
+                title + sexSuffix(sex),
+                dataset,
+                true,   // Include legend
+                true,   // Tooltips
+                false   // URLs
+        );
+
+        return chart;
+    }
+
+    // The pie one level below a slice of a pie made by this builder: the entries folded into
+    // "Other", or the countries of a region slice of the All Countries pie. Only the entries of
+    // the clicked slice are read. Returns null when there is nothing below the slice.
+    public JFreeChart drillDown(JFreeChart pie, String slice, int sex) {
+        long start = System.nanoTime();
+        FoldedPieDataset parent = (FoldedPieDataset) ((PiePlot) pie.getPlot()).getDataset();
+        FoldedPieDataset dataset;
+        String title;
+        if (parent.isOther(slice)) {
+            dataset = parent.expandOther();
+            title = pie.getTitle().getText() + " - " + slice;
+        } else {
+            int region = store.regionIndex(slice);
+            if (region < 0) {
+                return null;
+            }
+            // First metric of each country in the region, for the latest year
+            int latestYear = store.yearCount() - 1;
+            String[] names = new String[store.countryCount()];
+            double[] values = new double[store.countryCount()];
+            int count = 0;
+            for (int c = 0; c < store.countryCount(); c++) {
+                if (store.countryRegion(c) == region) {
+                    names[count] = store.countryName(c);
+                    values[count++] = store.value(c, 0, sex, latestYear);
+                }
+            }
+            dataset = new FoldedPieDataset(Arrays.copyOf(names, count), Arrays.copyOf(values, count),
+                    FoldedPieDataset.DEFAULT_LIMIT);
+            title = store.metricName(0) + " in " + slice + ", " + store.year(latestYear) + sexSuffix(sex);
+        }
+        if (dataset == null || dataset.getItemCount() == 0) {
+            return null;
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return ChartFactory.createPieChart(
+                title,
+                dataset,
+                true,   // Include legend
+                true,   // Tooltips
+                false   // URLs
+        );
+    }
+
+    public JFreeChart createCountryScatterPlot(String country) {
+        return createCountryScatterPlot(country, store.defaultSex());
+    }
+
+    public JFreeChart createCountryScatterPlot(String country, int sex) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = createCountrySeries(store.countryIndex(country), sex, DownsampledXYDataset.Method.MIN_MAX);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return yearAxis(ChartFactory.createScatterPlot(
+                title(ChartType.SCATTER, country, sex),
+                "Year",
+                indicator.axisLabel("Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false));
+    }
+
+    public JFreeChart createAllCountriesScatterPlot() {
+        return createAllCountriesScatterPlot(store.defaultSex());
+    }
+
+    public JFreeChart createAllCountriesScatterPlot(int sex) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = createAllCountriesSeries(sex, DownsampledXYDataset.Method.MIN_MAX);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return yearAxis(ChartFactory.createScatterPlot(
+                title(ChartType.SCATTER, ALL_COUNTRIES, sex),
+                "Year",
+                indicator.axisLabel("Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false));
+    }
+
+    private JFreeChart createGroupBarChart(String label, RowSet rows) {
+        long start = System.nanoTime();
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        double[][][] statistics = groupStatistics(rows);
+        BitSet metrics = rows.metrics();
+        BitSet years = rows.years();
+        for (int y = years.nextSetBit(0); y >= 0; y = years.nextSetBit(y + 1)) {
+            String year = String.valueOf(store.year(y));
+            for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+                dataset.addValue(statistics[0][m][y], store.metricName(m), year);
+            }
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        JFreeChart chart = ChartFactory.createBarChart(
+                "Average " + indicator.label() + " across " + rows.countriesWithRows() + " Countries in " + label + sexSuffix(rows.chartSex()),
+                "Year",
+                indicator.axisLabel("Mean Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false
+        );
+        chart.getCategoryPlot().setRangeGridlinesVisible(true);
+        return chart;
+    }
+
+    private JFreeChart createGroupLineChart(String label, RowSet rows) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = new DownsampledXYDataset(DownsampledXYDataset.Method.LTTB);
+        double[][][] statistics = groupStatistics(rows);
+        BitSet metrics = rows.metrics();
+        String[] suffixes = {"", " (min)", " (max)"};
+        for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+            for (int k = 0; k < suffixes.length; k++) {
+                double[] x = new double[store.yearCount()];
+                double[] y = new double[store.yearCount()];
+                int points = 0;
+                for (int j = 0; j < store.yearCount(); j++) {
+                    if (!Double.isNaN(statistics[k][m][j])) {
+                        x[points] = store.year(j);
+                        y[points++] = statistics[k][m][j];
+                    }
+                }
+                dataset.addSeries(store.metricName(m) + suffixes[k], Arrays.copyOf(x, points), Arrays.copyOf(y, points));
+            }
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return yearAxis(ChartFactory.createXYLineChart(
+                indicator.label() + " Trends across " + rows.countriesWithRows() + " Countries in " + label + sexSuffix(rows.chartSex()),
+                "Year",
+                indicator.axisLabel("Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false
+        ));
+    }
+
+    private JFreeChart createGroupPieChart(String label, RowSet rows) {
+        long start = System.nanoTime();
+        double[][][] statistics = groupStatistics(rows);
+        BitSet metrics = rows.metrics();
+
+        // Metric means in the latest selected year that has data
+        int latest = -1;
+        BitSet years = rows.years();
+        for (int y = years.length() - 1; y >= 0 && latest < 0; y = years.previousSetBit(y - 1)) {
+            for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+                if (!Double.isNaN(statistics[0][m][y])) {
+                    latest = y;
+                }
+            }
+        }
+        String[] names = new String[metrics.cardinality()];
+        double[] values = new double[names.length];
+        int entry = 0;
+        for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+            names[entry] = store.metricName(m);
+            values[entry++] = latest >= 0 ? statistics[0][m][latest] : Double.NaN;
+        }
+        FoldedPieDataset dataset = new FoldedPieDataset(names, values, FoldedPieDataset.DEFAULT_LIMIT);
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return ChartFactory.createPieChart(
+                "Average " + indicator.label() + " Distribution in " + label + (latest >= 0 ? ", " + store.year(latest) : "")
+                        + sexSuffix(rows.chartSex()),
+                dataset,
+                true,   // Include legend
+                true,   // Tooltips
+                false   // URLs
+        );
+    }
+
+    private JFreeChart createGroupScatterPlot(String label, RowSet rows) {
+        long start = System.nanoTime();
+        DownsampledXYDataset dataset = new DownsampledXYDataset(DownsampledXYDataset.Method.MIN_MAX);
+        int sex = rows.chartSex();
+        BitSet countries = rows.countries();
+        BitSet metrics = rows.metrics();
+        for (int c = countries.nextSetBit(0); c >= 0; c = countries.nextSetBit(c + 1)) {
+            checkCancelled();
+            for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+                double[] x = new double[store.yearCount()];
+                double[] y = new double[store.yearCount()];
+                int points = 0;
+                for (int j = 0; j < store.yearCount(); j++) {
+                    if (rows.contains(c, m, sex, j)) {
+                        x[points] = store.year(j);
+                        y[points++] = store.value(c, m, sex, j);
+                    }
+                }
+                if (points > 0) {
+                    dataset.addSeries(store.countryName(c) + " " + store.metricName(m), Arrays.copyOf(x, points), Arrays.copyOf(y, points));
+                }
+            }
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        return yearAxis(ChartFactory.createScatterPlot(
+                indicator.label() + " Scatter Plot for " + label + sexSuffix(sex),
+                "Year",
+                indicator.axisLabel("Value"),
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, true, false));
+    }
+
+    // Life expectancy against HALE for every selected country and year, one point series and one
+    // least-squares line per metric pair, with the pair's statistics as subtitles. A highlighted
+    // country (or -1) also gets a series of its own, drawn on top.
+    private JFreeChart createCompareChart(String label, BitSet countries, BitSet years, int sex, int highlight) {
+        long start = System.nanoTime();
+        List<CompareAnalysis.Result> results = CompareAnalysis.compute(store, countries, years, sex);
+        DefaultXYDataset points = new DefaultXYDataset();
+        DefaultXYDataset lines = new DefaultXYDataset();
+        int countryCount = 0;
+        for (CompareAnalysis.Result result : results) {
+            String name = store.metricName(result.lifeMetric) + " vs " + store.metricName(result.haleMetric);
+            points.addSeries(name, new double[][]{
+                    Arrays.copyOf(result.life, result.count), Arrays.copyOf(result.hale, result.count)});
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < result.count; i++) {
+                min = Math.min(min, result.life[i]);
+                max = Math.max(max, result.life[i]);
+            }
+            if (!Double.isNaN(result.slope)) {
+                lines.addSeries(name + " (fit)", new double[][]{
+                        {min, max}, {result.slope * min + result.intercept, result.slope * max + result.intercept}});
+            }
+            countryCount = Math.max(countryCount, result.countryCount);
+        }
+        if (highlight >= 0) {
+            for (CompareAnalysis.Result result : results) {
+                double[] x = new double[store.yearCount()];
+                double[] y = new double[store.yearCount()];
+                int count = 0;
+                for (int i = 0; i < result.count; i++) {
+                    if (result.countries[i] == highlight) {
+                        x[count] = result.life[i];
+                        y[count++] = result.hale[i];
+                    }
+                }
+                points.addSeries(store.countryName(highlight) + ", " + store.metricName(result.lifeMetric),
+                        new double[][]{Arrays.copyOf(x, count), Arrays.copyOf(y, count)});
+            }
+        }
+        Instrumentation.record(Instrumentation.DATASET_POPULATION, start);
+
+        String title = "Life Expectancy vs HALE across " + countryCount + " Countries";
+        if (highlight >= 0) {
+            title = "Life Expectancy vs HALE: " + store.countryName(highlight) + " among " + countryCount + " Countries";
+        } else if (label != null) {
+            title += " in " + label;
+        }
+        title += sexSuffix(sex);
+        JFreeChart chart = ChartFactory.createScatterPlot(
+                title,
+                "Life expectancy (years)",
+                "Healthy life expectancy (years)",
+                points,
+                PlotOrientation.VERTICAL,
+                true, true, false);
+        XYPlot plot = chart.getXYPlot();
+        plot.setSeriesRenderingOrder(SeriesRenderingOrder.FORWARD); // Highlighted country on top
+        plot.setDataset(1, lines);
+        plot.setRenderer(1, new XYLineAndShapeRenderer(true, false));
+        if (results.isEmpty()) {
+            chart.addSubtitle(new TextTitle("The data has no life expectancy and HALE metrics for the same age"));
+        }
+        for (CompareAnalysis.Result result : results) {
+            chart.addSubtitle(new TextTitle(result.summary(store)));
+        }
+        return chart;
+    }
+
+    private static BitSet all(int count) {
+        BitSet bits = new BitSet(count);
+        bits.set(0, count);
+        return bits;
+    }
+
+    // Mean, minimum and maximum ([0], [1], [2]) per [metric][year] across the rows' countries,
+    // NaN where no selected country has a value
+    private double[][][] groupStatistics(RowSet rows) {
+        int sex = rows.chartSex();
+        BitSet countries = rows.countries();
+        BitSet metrics = rows.metrics();
+        BitSet years = rows.years();
+        double[][][] statistics = new double[3][store.metricCount()][store.yearCount()];
+        for (double[][] statistic : statistics) {
+            for (double[] row : statistic) {
+                Arrays.fill(row, Double.NaN);
+            }
+        }
+        for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+            for (int y = years.nextSetBit(0); y >= 0; y = years.nextSetBit(y + 1)) {
+                double sum = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                int count = 0;
+                for (int c = countries.nextSetBit(0); c >= 0; c = countries.nextSetBit(c + 1)) {
+                    if (rows.contains(c, m, sex, y)) {
+                        double value = store.value(c, m, sex, y);
+                        sum += value;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    statistics[0][m][y] = sum / count;
+                    statistics[1][m][y] = min;
+                    statistics[2][m][y] = max;
+                }
+            }
+        }
+        return statistics;
+    }
+
+    private DownsampledXYDataset createCountrySeries(int countryIndex, int sex, DownsampledXYDataset.Method method) {
+        DownsampledXYDataset dataset = new DownsampledXYDataset(method);
+        addSeries(dataset, countryIndex, sex, "");
+        return dataset;
+    }
+
+    private DownsampledXYDataset createAllCountriesSeries(int sex, DownsampledXYDataset.Method method) {
+        DownsampledXYDataset dataset = new DownsampledXYDataset(method);
+        for (int i = 0; i < store.countryCount(); i++) {
+            checkCancelled();
+            addSeries(dataset, i, sex, store.countryName(i) + " ");
+        }
+        return dataset;
+    }
+
+    // One series per metric, with a point for every year that has a value
+    private void addSeries(DownsampledXYDataset dataset, int countryIndex, int sex, String prefix) {
+        for (int m = 0; m < store.metricCount(); m++) {
+            double[][] points = seriesPoints(countryIndex, m, sex);
+            dataset.addSeries(prefix + store.metricName(m), points[0], points[1]);
+        }
+    }
+
+    // {years, values} of one country, metric and sex, read as one run of the store
+    private double[][] seriesPoints(int countryIndex, int metric, int sex) {
+        double[] values = new double[store.yearCount()];
+        store.series(countryIndex, metric, sex, values);
+        double[] x = new double[values.length];
+        int points = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                x[points] = store.year(i);
+                values[points++] = values[i];
+            }
+        }
+        return new double[][]{Arrays.copyOf(x, points), Arrays.copyOf(values, points)};
+    }
+
+    // Stops a superseded build early; checked between countries in the larger loops
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
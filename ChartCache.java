@@ -0,0 +1,182 @@
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+// Bounded LRU cache of built charts.
+// Entries are weighed (for charts: the number of data items) and the least
+// recently used ones are evicted once the total weight passes the limit.
+// Values are held through soft references, so the GC can also drop them under
+// memory pressure; a cleared entry simply counts as a miss.
+public final class ChartCache<V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ChartCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(Key key) {
+        Entry<V> entry = entries.get(key);
+        V value = entry != null ? entry.value.get() : null;
+        if (value == null) {
+            if (entry != null) {
+                // Collected under memory pressure
+                remove(key, entry);
+                evictions++;
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return value;
+    }
+
+    public synchronized void put(Key key, V value) {
+        long valueWeight = Math.max(1, weigher.applyAsLong(value));
+        if (valueWeight > maxWeight) {
+            return; // Would evict everything else and still not fit
+        }
+        Entry<V> previous = entries.put(key, new Entry<>(value, valueWeight));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += valueWeight;
+
+        Iterator<Map.Entry<Key, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Map.Entry<Key, Entry<V>> next = eldest.next();
+            if (next.getKey().equals(key)) {
+                continue;
+            }
+            weight -= next.getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Adds the value unless the key already has one, e.g. for a chart built ahead of use;
+    // neither counts as a hit or miss
+    public synchronized boolean putIfAbsent(Key key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.value.get() != null) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    // Drops one entry, e.g. a chart that was changed in place into another view
+    public synchronized void invalidate(Key key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry);
+        }
+    }
+
+    // Drops every entry, e.g. after the underlying data was reloaded
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private void remove(Key key, Entry<V> entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    public synchronized double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ChartCache[entries=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d, hitRate=%.2f]",
+                entries.size(), weight, maxWeight, hits, misses, evictions, hitRate());
+    }
+
+    // Identifies one view: country, chart type, the active filters and the data version
+    public static final class Key {
+        private final String country;
+        private final String chartType;
+        private final String filters;
+        private final long dataVersion;
+
+        public Key(String country, String chartType, String filters, long dataVersion) {
+            this.country = country;
+            this.chartType = chartType;
+            this.filters = filters;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return dataVersion == other.dataVersion
+                    && country.equals(other.country)
+                    && chartType.equals(other.chartType)
+                    && filters.equals(other.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(country, chartType, filters, dataVersion);
+        }
+
+        @Override
+        public String toString() {
+            return country + "/" + chartType + (filters.isEmpty() ? "" : "/" + filters) + "@" + dataVersion;
+        }
+    }
+
+    private static final class Entry<V> {
+        final SoftReference<V> value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = new SoftReference<>(value);
+            this.weight = weight;
+        }
+    }
+}
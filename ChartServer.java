@@ -0,0 +1,296 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Embedded HTTP service for the dashboard charts, built on the JDK's com.sun.net.httpserver.
+//
+//   GET /chart?country=India&type=line&format=png[&width=800&height=600][&sex=Female]
+//   GET /stats
+//
+// Requests run on virtual threads when the JVM has them (Java 21+) and on a
+// fixed pool otherwise. Identical requests that arrive while a chart is being
+// rendered wait for that render instead of starting their own, and rendered
+// bytes are cached with an ETag so clients can revalidate with If-None-Match.
+public final class ChartServer {
+
+    private static final int MAX_SIZE = 4000;
+    private static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile ChartBuilder builder;
+    private volatile long dataVersion;
+
+    private final ChartCache<Rendered> cache;
+    private final ConcurrentHashMap<ChartCache.Key, CompletableFuture<Rendered>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public ChartServer(DataStore store, int port, long cacheBytes) throws IOException {
+        this.builder = new ChartBuilder(store);
+        this.cache = new ChartCache<>(cacheBytes, rendered -> rendered.bytes.length);
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/chart", this::handleChart);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Serves new data; rendered images of the old data are dropped
+    public void reload(DataStore store) {
+        builder = new ChartBuilder(store);
+        dataVersion++;
+        cache.invalidateAll();
+    }
+
+    private void handleChart(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                sendText(exchange, 405, "Only GET and HEAD are supported");
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String country = query.get("country");
+            if (country == null) {
+                sendText(exchange, 400, "Missing country parameter");
+                return;
+            }
+            ChartType type;
+            BatchRenderer.Format format;
+            int width;
+            int height;
+            try {
+                type = ChartType.parse(query.getOrDefault("type", "bar"));
+                format = BatchRenderer.Format.valueOf(query.getOrDefault("format", "png").toUpperCase(Locale.ROOT));
+                width = Integer.parseInt(query.getOrDefault("width", "800"));
+                height = Integer.parseInt(query.getOrDefault("height", "600"));
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            if (width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE) {
+                sendText(exchange, 400, "width and height must be between 1 and " + MAX_SIZE);
+                return;
+            }
+            if (!BatchRenderer.supports(format)) {
+                sendText(exchange, 501, format + " output is not available on this server");
+                return;
+            }
+            ChartBuilder current = builder;
+            if (!country.equals(ChartBuilder.ALL_COUNTRIES) && current.getStore().countryIndex(country) < 0) {
+                sendText(exchange, 404, "Unknown country: " + country);
+                return;
+            }
+            String sexName = query.get("sex");
+            int sex = sexName == null ? current.getStore().defaultSex() : current.getStore().sexIndex(sexName);
+            if (sex < 0) {
+                sendText(exchange, 404, "Unknown sex: " + sexName);
+                return;
+            }
+
+            ChartCache.Key key = new ChartCache.Key(country, type.id(),
+                    format + "/" + width + "x" + height + "/" + current.getStore().sexName(sex), dataVersion);
+            Rendered rendered = render(key, current, country, type, sex, format, width, height);
+
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", rendered.etag);
+            headers.set("Cache-Control", "no-cache");
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (rendered.etag.equals(ifNoneMatch)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", format == BatchRenderer.Format.PNG ? "image/png" : "image/svg+xml");
+            send(exchange, 200, rendered.bytes);
+        } catch (RuntimeException e) {
+            sendText(exchange, 500, "Rendering failed: " + e);
+        } finally {
+            exchange.close();
+            Instrumentation.record(Instrumentation.HTTP_CHART, start);
+        }
+    }
+
+    // Returns the cached image, joins a render already in progress, or renders it
+    private Rendered render(ChartCache.Key key, ChartBuilder current, String country, ChartType type, int sex,
+                            BatchRenderer.Format format, int width, int height) throws IOException {
+        Rendered cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Rendered> mine = new CompletableFuture<>();
+        CompletableFuture<Rendered> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return join(running);
+        }
+
+        try {
+            renders.incrementAndGet();
+            byte[] bytes = BatchRenderer.encode(current.createChart(country, type, sex), format, width, height);
+            Rendered rendered = new Rendered(bytes);
+            cache.put(key, rendered);
+            mine.complete(rendered);
+            return rendered;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static Rendered join(CompletableFuture<Rendered> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a render", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            String stats = String.format("requests=%d%nrenders=%d%ncoalesced=%d%nnotModified=%d%ncache=%s%n%s",
+                    requests.get(), renders.get(), coalesced.get(), notModified.get(), cache, Instrumentation.report());
+            sendText(exchange, 200, stats);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    // Virtual threads when available (Java 21+), otherwise a fixed pool sized for blocking I/O
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors() * 4;
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "chart-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // An encoded image and its ETag
+    private static final class Rendered {
+        final byte[] bytes;
+        final String etag;
+
+        Rendered(byte[] bytes) {
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + bytes.length + "\"";
+        }
+    }
+
+    //   java ChartServer [--port 8080] [--data file] [--cache-mb 256]
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = 8080;
+        String data = null;
+        long cacheBytes = DEFAULT_CACHE_BYTES;
+        if (args.length % 2 != 0) {
+            System.err.println("Usage: java ChartServer [--port 8080] [--data file] [--cache-mb 256]");
+            System.exit(2);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--data":
+                    data = args[i + 1];
+                    break;
+                case "--cache-mb":
+                    cacheBytes = Long.parseLong(args[i + 1]) * 1024 * 1024;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        DataStore store = data != null ? DataStore.open(Paths.get(data)) : SampleData.load();
+        ChartServer server = new ChartServer(store, port, cacheBytes);
+        server.start();
+        System.out.println("Serving charts on http://localhost:" + server.port() + "/chart?country=India&type=line&format=png");
+    }
+}
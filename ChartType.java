@@ -0,0 +1,39 @@
+import java.util.Locale;
+
+// The chart types offered by the dashboard and the batch renderer
+public enum ChartType {
+    BAR("Bar Chart", "bar"),
+    LINE("Line Chart", "line"),
+    PIE("Pie Chart", "pie"),
+    SCATTER("Scatter Plot", "scatter"),
+    COMPARE("Compare Countries", "compare");
+
+    private final String label;
+    private final String id;
+
+    ChartType(String label, String id) {
+        this.label = label;
+        this.id = id;
+    }
+
+    // Button and story label, e.g. "Bar Chart"
+    public String label() {
+        return label;
+    }
+
+    // Short name used in file names and on the command line, e.g. "bar"
+    public String id() {
+        return id;
+    }
+
+    // Accepts either the short id or the label, case-insensitively
+    public static ChartType parse(String name) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        for (ChartType type : values()) {
+            if (type.id.equals(lower) || type.label.toLowerCase(Locale.ROOT).equals(lower)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown chart type: " + name);
+    }
+}
@@ -0,0 +1,43 @@
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
+
+// A built chart together with the story shown next to it
+final class ChartView {
+    final JFreeChart chart;
+    final String story;
+    final int itemCount;
+
+    ChartView(JFreeChart chart, String story) {
+        this.chart = chart;
+        this.story = story;
+        this.itemCount = countItems(chart);
+    }
+
+    // Number of data items in a chart, used as its weight in the cache
+    static int countItems(JFreeChart chart) {
+        Plot plot = chart.getPlot();
+        if (plot instanceof CategoryPlot) {
+            CategoryDataset dataset = ((CategoryPlot) plot).getDataset();
+            return dataset.getRowCount() * dataset.getColumnCount();
+        }
+        if (plot instanceof XYPlot) {
+            XYDataset dataset = ((XYPlot) plot).getDataset();
+            int items = 0;
+            for (int series = 0; series < dataset.getSeriesCount(); series++) {
+                items += dataset instanceof DownsampledXYDataset
+                        ? ((DownsampledXYDataset) dataset).getTotalItemCount(series)
+                        : dataset.getItemCount(series);
+            }
+            return items;
+        }
+        if (plot instanceof PiePlot) {
+            return ((PiePlot) plot).getDataset().getItemCount();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+// Life expectancy against healthy life expectancy (HALE) across countries.
+// Each life expectancy metric is paired with the HALE metric for the same age ("... at birth",
+// "... at age 60"), and every selected (country, year) with both values becomes a point.
+// The points are gathered into primitive arrays and summed in one pass by a StatisticsKernel,
+// which gives the correlation, the least-squares line HALE = slope * LE + intercept, the mean
+// gap LE - HALE (years lived in less than full health) and the mean gap ratio (LE - HALE) / LE.
+public final class CompareAnalysis {
+
+    private CompareAnalysis() {
+    }
+
+    // The statistics of one life expectancy / HALE pair
+    public static final class Result {
+        final int lifeMetric;
+        final int haleMetric;
+        // Points, one per (country, year), in country then year order
+        final double[] life;
+        final double[] hale;
+        final int[] countries;
+        final int[] years;
+        final int count;
+        final int countryCount;
+        final double correlation;
+        final double slope;
+        final double intercept;
+        final double meanGap;
+        final double gapRatio;
+
+        Result(int lifeMetric, int haleMetric, double[] life, double[] hale, int[] countries, int[] years, int count,
+               double[] sums) {
+            this.lifeMetric = lifeMetric;
+            this.haleMetric = haleMetric;
+            this.life = life;
+            this.hale = hale;
+            this.countries = countries;
+            this.years = years;
+            this.count = count;
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || countries[i] != countries[i - 1]) {
+                    distinct++;
+                }
+            }
+            this.countryCount = distinct;
+
+            double meanX = sums[StatisticsKernel.SUM_X] / count;
+            double meanY = sums[StatisticsKernel.SUM_Y] / count;
+            double varianceX = sums[StatisticsKernel.SUM_XX] / count - meanX * meanX;
+            double varianceY = sums[StatisticsKernel.SUM_YY] / count - meanY * meanY;
+            double covariance = sums[StatisticsKernel.SUM_XY] / count - meanX * meanY;
+            this.slope = varianceX > 0 ? covariance / varianceX : Double.NaN;
+            this.intercept = meanY - slope * meanX;
+            this.correlation = varianceX > 0 && varianceY > 0 ? covariance / Math.sqrt(varianceX * varianceY) : Double.NaN;
+            this.meanGap = meanX - meanY;
+            this.gapRatio = sums[StatisticsKernel.SUM_GAP_RATIO] / count;
+        }
+
+        // e.g. "Life Expectancy at Birth vs HALE at Birth: r = 0.98, HALE = 0.87 x LE + 1.2, 12.3% of life (9.8 years) in ill health"
+        public String summary(DataStore store) {
+            return String.format(Locale.ROOT, "%s vs %s: r = %.2f, HALE = %.2f x LE %s %.1f, %.1f%% of life (%.1f years) in ill health",
+                    store.metricName(lifeMetric), store.metricName(haleMetric), correlation, slope,
+                    intercept < 0 ? "-" : "+", Math.abs(intercept), gapRatio * 100, meanGap);
+        }
+    }
+
+    // One result per metric pair that has points among the selected countries and years
+    public static List<Result> compute(DataStore store, BitSet countries, BitSet years, int sex) {
+        return compute(store, countries, years, sex, StatisticsKernel.get());
+    }
+
+    public static List<Result> compute(DataStore store, BitSet countries, BitSet years, int sex, StatisticsKernel kernel) {
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        int capacity = countries.cardinality() * years.cardinality();
+        for (int[] pair : metricPairs(store)) {
+            double[] life = new double[capacity];
+            double[] hale = new double[capacity];
+            int[] pointCountries = new int[capacity];
+            int[] pointYears = new int[capacity];
+            int count = 0;
+            for (int c = countries.nextSetBit(0); c >= 0; c = countries.nextSetBit(c + 1)) {
+                for (int y = years.nextSetBit(0); y >= 0; y = years.nextSetBit(y + 1)) {
+                    double x = store.value(c, pair[0], sex, y);
+                    double h = store.value(c, pair[1], sex, y);
+                    if (!Double.isNaN(x) && !Double.isNaN(h) && x > 0) {
+                        life[count] = x;
+                        hale[count] = h;
+                        pointCountries[count] = c;
+                        pointYears[count] = y;
+                        count++;
+                    }
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            double[] sums = new double[StatisticsKernel.SUMS];
+            kernel.accumulate(life, hale, count, sums);
+            results.add(new Result(pair[0], pair[1], life, hale, pointCountries, pointYears, count, sums));
+        }
+        Instrumentation.record(Instrumentation.ANALYSIS, start);
+        return results;
+    }
+
+    // {life expectancy metric, HALE metric} pairs, matched on the text from " at " on
+    // ("Life expectancy at birth (years)" with "Healthy life expectancy (HALE) at birth (years)")
+    static List<int[]> metricPairs(DataStore store) {
+        List<int[]> pairs = new ArrayList<>();
+        for (int h = 0; h < store.metricCount(); h++) {
+            String hale = store.metricName(h).toLowerCase(Locale.ROOT);
+            if (!isHale(hale)) {
+                continue;
+            }
+            for (int m = 0; m < store.metricCount(); m++) {
+                String life = store.metricName(m).toLowerCase(Locale.ROOT);
+                if (!isHale(life) && life.contains("life expectancy") && age(life).equals(age(hale))) {
+                    pairs.add(new int[]{m, h});
+                    break;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static boolean isHale(String metric) {
+        return metric.contains("hale") || metric.contains("healthy");
+    }
+
+    private static String age(String metric) {
+        int at = metric.indexOf(" at ");
+        return at < 0 ? "" : metric.substring(at);
+    }
+}
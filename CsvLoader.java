@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Streams a CSV or TSV export into a DataStore.
+// The file is read through a reusable char buffer one record at a time; key
+// columns go straight into the builder's dictionaries and numbers are parsed
+// from the chars, so no per-row String or boxed value is created.
+//
+// The header decides which columns are used. Both the plain layout
+// (Country, Metric, Sex, Year, Value) and the WHO GHO export layout
+// (Location, Indicator, Dim1, Period, FactValueNumeric) are recognised, with
+// an optional Region / ParentLocation column assigning countries to regions and an
+// optional Income Group column assigning them to income groups.
+// Rows with an empty or non-numeric value are skipped.
+public final class CsvLoader {
+
+    static final String[][] COLUMN_NAMES = {
+            {"country", "location", "country name"},
+            {"metric", "indicator", "gho (display)"},
+            {"sex", "dim1", "sex (display)"},
+            {"year", "period", "year (display)"},
+            {"value", "factvaluenumeric", "numeric"},
+            {"region", "parentlocation", "who region"},
+            {"income group", "incomegroup", "world bank income group"}
+    };
+    static final int COUNTRY = 0;
+    static final int METRIC = 1;
+    static final int SEX = 2;
+    static final int YEAR = 3;
+    static final int VALUE = 4;
+    static final int REGION = 5;
+    static final int INCOME_GROUP = 6;
+
+    private final DataStore.Builder builder;
+    private char[] line = new char[256];
+    private int lineLength;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+    private char delimiter;
+
+    private CsvLoader(DataStore.Builder builder) {
+        this.builder = builder;
+    }
+
+    public static DataStore load(Path path) throws IOException {
+        DataStore.Builder builder = new DataStore.Builder();
+        load(path, builder);
+        return builder.build();
+    }
+
+    // Appends the rows of the file to an existing builder, returns the number of rows added
+    public static int load(Path path, DataStore.Builder builder) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return new CsvLoader(builder).read(reader, path.toString());
+        }
+    }
+
+    public static int load(Reader reader, DataStore.Builder builder) throws IOException {
+        return new CsvLoader(builder).read(reader, "input");
+    }
+
+    private int read(Reader reader, String source) throws IOException {
+        int before = builder.rowCount();
+        LineReader lines = new LineReader(reader);
+        if (!lines.next()) {
+            return 0;
+        }
+
+        // Header: pick the delimiter and map the columns we need
+        delimiter = indexOf('\t') >= 0 ? '\t' : ',';
+        split();
+        int[] columns = new int[COLUMN_NAMES.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = findColumn(COLUMN_NAMES[c]);
+        }
+        if (columns[COUNTRY] < 0 || columns[METRIC] < 0 || columns[YEAR] < 0 || columns[VALUE] < 0) {
+            throw new IOException(source + ": header must name country, metric, year and value columns");
+        }
+
+        int defaultSex = columns[SEX] < 0 ? builder.sexes().encode(DataStore.BOTH_SEXES) : -1;
+        int needed = 0;
+        for (int column : columns) {
+            needed = Math.max(needed, column + 1);
+        }
+
+        while (lines.next()) {
+            if (lineLength == 0) {
+                continue;
+            }
+            split();
+            if (fieldCount < needed) {
+                continue;
+            }
+
+            int yearField = columns[YEAR];
+            int valueField = columns[VALUE];
+            if (!isInteger(line, fieldStart[yearField], fieldEnd[yearField])) {
+                continue;
+            }
+            double value = parseDouble(line, fieldStart[valueField], fieldEnd[valueField]);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            int year = parseInt(line, fieldStart[yearField], fieldEnd[yearField]);
+
+            int country = encode(builder.countries(), columns[COUNTRY]);
+            int metric = encode(builder.metrics(), columns[METRIC]);
+            int sex = defaultSex >= 0 ? defaultSex : encode(builder.sexes(), columns[SEX]);
+            builder.add(country, metric, sex, year, value);
+            if (columns[REGION] >= 0 && fieldEnd[columns[REGION]] > fieldStart[columns[REGION]]) {
+                builder.setRegion(country, encode(builder.regions(), columns[REGION]));
+            }
+            if (columns[INCOME_GROUP] >= 0 && fieldEnd[columns[INCOME_GROUP]] > fieldStart[columns[INCOME_GROUP]]) {
+                builder.setIncomeGroup(country, encode(builder.incomeGroups(), columns[INCOME_GROUP]));
+            }
+        }
+        return builder.rowCount() - before;
+    }
+
+    private int encode(StringDictionary dictionary, int field) {
+        return dictionary.encode(line, fieldStart[field], fieldEnd[field] - fieldStart[field]);
+    }
+
+    private int findColumn(String[] names) {
+        for (int f = 0; f < fieldCount; f++) {
+            String header = new String(line, fieldStart[f], fieldEnd[f] - fieldStart[f]).trim().toLowerCase(Locale.ROOT);
+            for (String name : names) {
+                if (header.equals(name)) {
+                    return f;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(char c) {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Splits the current line into fields. Quoted fields are unescaped in place,
+    // so afterwards every field is a plain [start, end) range of the line buffer.
+    private void split() {
+        fieldCount = 0;
+        int i = 0;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+            }
+            int start = i;
+            int end;
+            if (i < lineLength && line[i] == '"') {
+                int write = i;
+                i++;
+                while (i < lineLength) {
+                    if (line[i] == '"') {
+                        if (i + 1 < lineLength && line[i + 1] == '"') {
+                            line[write++] = '"';
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    line[write++] = line[i++];
+                }
+                end = write;
+                while (i < lineLength && line[i] != delimiter) {
+                    i++;
+                }
+            } else {
+                while (i < lineLength && line[i] != delimiter) {
+                    i++;
+                }
+                end = i;
+            }
+
+            // Trim surrounding blanks
+            while (start < end && line[start] == ' ') {
+                start++;
+            }
+            while (end > start && line[end - 1] == ' ') {
+                end--;
+            }
+            fieldStart[fieldCount] = start;
+            fieldEnd[fieldCount] = end;
+            fieldCount++;
+
+            if (i >= lineLength) {
+                return;
+            }
+            i++; // Skip the delimiter
+        }
+    }
+
+    static boolean isInteger(char[] chars, int start, int end) {
+        if (start < end && chars[start] == '-') {
+            start++;
+        }
+        if (start == end || end - start > 9) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int parseInt(char[] chars, int start, int end) {
+        boolean negative = chars[start] == '-';
+        int result = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            result = result * 10 + (chars[i] - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    // Parses a decimal number, returning NaN for empty or malformed input.
+    // Plain decimals with up to 15 significant digits are parsed exactly without
+    // allocating; anything else (exponents, long mantissas) falls back to Double.parseDouble.
+    static double parseDouble(char[] chars, int start, int end) {
+        if (start == end) {
+            return Double.NaN;
+        }
+        int i = start;
+        boolean negative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 15) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(chars, start, end - start));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Reads one line at a time into the loader's reusable buffer
+    private final class LineReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        boolean next() throws IOException {
+            lineLength = 0;
+            boolean readAny = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return readAny;
+                    }
+                }
+                readAny = true;
+                char c = buffer[position++];
+                if (c == '\n') {
+                    return true;
+                }
+                if (c == '\r') {
+                    continue;
+                }
+                if (c == '\uFEFF' && lineLength == 0) {
+                    continue; // Byte order mark
+                }
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, lineLength * 2);
+                }
+                line[lineLength++] = c;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+// What the dashboard showed when it was last closed, kept in the user's preferences: the
+// indicator, the selector entry, chart type and sex, and whether the dashboard or the About
+// screen was up. It also counts how often each selection x chart type was shown, so the most
+// used views can be built ahead on the next launch. Names that no longer exist in the data
+// are ignored when restoring.
+final class DashboardSession {
+
+    // Views whose use is counted; the least used are forgotten beyond this
+    private static final int MAX_COUNTED_VIEWS = 32;
+
+    private static final String INDICATOR = "indicator";
+    private static final String SELECTION = "selection";
+    private static final String CHART_TYPE = "chartType";
+    private static final String SEX = "sex";
+    private static final String DASHBOARD_SHOWN = "dashboardShown";
+    // One "count<TAB>type id<TAB>selection" line per counted view
+    private static final String VIEW_COUNTS = "viewCounts";
+
+    // A selector entry shown as a chart type
+    static final class View {
+        final String selection;
+        final ChartType type;
+
+        View(String selection, ChartType type) {
+            this.selection = selection;
+            this.type = type;
+        }
+    }
+
+    private final Preferences preferences;
+    // "type id<TAB>selection" -> times shown
+    private final Map<String, Integer> viewCounts = new LinkedHashMap<>();
+
+    private DashboardSession(Preferences preferences) {
+        this.preferences = preferences;
+        for (String line : preferences.get(VIEW_COUNTS, "").split("\n")) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length == 3) {
+                try {
+                    viewCounts.put(fields[1] + "\t" + fields[2], Integer.parseInt(fields[0]));
+                } catch (NumberFormatException e) {
+                    // Skip a damaged entry
+                }
+            }
+        }
+    }
+
+    static DashboardSession load() {
+        return new DashboardSession(Preferences.userRoot().node("data/visualization/dashboard"));
+    }
+
+    // Id of the indicator shown last, or null
+    String indicator() {
+        return preferences.get(INDICATOR, null);
+    }
+
+    String selection() {
+        return preferences.get(SELECTION, null);
+    }
+
+    // The chart type shown last, or null
+    ChartType chartType() {
+        String id = preferences.get(CHART_TYPE, null);
+        if (id == null) {
+            return null;
+        }
+        try {
+            return ChartType.parse(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Sex name as in the data, e.g. "Female", or null
+    String sex() {
+        return preferences.get(SEX, null);
+    }
+
+    // Whether the dashboard, rather than the About screen, was up when it was closed
+    boolean dashboardShown() {
+        return preferences.getBoolean(DASHBOARD_SHOWN, false);
+    }
+
+    void indicatorShown(Indicator indicator) {
+        preferences.put(INDICATOR, indicator.id());
+    }
+
+    void screenShown(boolean dashboard) {
+        preferences.putBoolean(DASHBOARD_SHOWN, dashboard);
+    }
+
+    // Called for each chart the user asks for
+    void viewShown(String selection, ChartType type, String sex) {
+        preferences.put(SELECTION, selection);
+        preferences.put(CHART_TYPE, type.id());
+        preferences.put(SEX, sex);
+
+        String view = type.id() + "\t" + selection;
+        viewCounts.merge(view, 1, Integer::sum);
+        if (viewCounts.size() > MAX_COUNTED_VIEWS) {
+            // The least used other view, so a new view is not forgotten before it can count up
+            String leastUsed = null;
+            for (Map.Entry<String, Integer> entry : viewCounts.entrySet()) {
+                if (!entry.getKey().equals(view)
+                        && (leastUsed == null || entry.getValue() < viewCounts.get(leastUsed))) {
+                    leastUsed = entry.getKey();
+                }
+            }
+            viewCounts.remove(leastUsed);
+        }
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : viewCounts.entrySet()) {
+            lines.append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+        }
+        preferences.put(VIEW_COUNTS, lines.toString());
+    }
+
+    // Up to limit views, most shown first
+    List<View> mostUsed(int limit) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(viewCounts.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()));
+        List<View> views = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (views.size() == limit) {
+                break;
+            }
+            String[] fields = entry.getKey().split("\t", 2);
+            try {
+                views.add(new View(fields[1], ChartType.parse(fields[0])));
+            } catch (IllegalArgumentException e) {
+                // A chart type of another version
+            }
+        }
+        return views;
+    }
+
+    // Writes the state out now; preferences are otherwise written in the background
+    void save() {
+        try {
+            preferences.flush();
+        } catch (BackingStoreException e) {
+            System.err.println("Could not save the dashboard session: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// The dashboard's views without the window: the chart and story for an entry of the country
+// selector, a chart type and a sex, built by the ChartBuilder and StoryEngine of the current
+// data and kept in a ChartCache. LifeExpectancyDashboard shows these views and builds them off
+// the EDT; RegressionHarness drives the same code headless.
+final class DashboardViews {
+
+    static final String ALL_COUNTRIES = ChartBuilder.ALL_COUNTRIES;
+
+    // Selector entries for country groups, resolved through the query engine
+    static final String REGION_SUFFIX = " (region)";
+    static final String INCOME_GROUP_SUFFIX = " (income group)";
+
+    // Upper bound for the chart cache, in data items across all cached charts
+    private static final long CHART_CACHE_MAX_ITEMS = 2_000_000;
+
+    // Recently shown charts, so switching back to a view does not rebuild it
+    private final ChartCache<ChartView> chartCache = new ChartCache<>(CHART_CACHE_MAX_ITEMS, view -> view.itemCount);
+
+    // The data a view is built from, replaced whole so a build never mixes two stores
+    private static final class Data {
+        final Indicator indicator;
+        final DataStore store;
+        final ChartBuilder builder;
+        final StoryEngine stories;
+        final QueryEngine queries;
+        final long version;
+
+        Data(Indicator indicator, DataStore store, ChartBuilder builder, StoryEngine stories, QueryEngine queries, long version) {
+            this.indicator = indicator;
+            this.store = store;
+            this.builder = builder;
+            this.stories = stories;
+            this.queries = queries;
+            this.version = version;
+        }
+
+        Data withVersion(long newVersion) {
+            return new Data(indicator, store, builder, stories, queries, newVersion);
+        }
+    }
+
+    // Data for every chart and the dataset view; replaced by reload and, with a new version, by
+    // applyUpdates. Readers take it once per view.
+    private volatile Data data;
+
+    DashboardViews(DataStore store, Indicator indicator) {
+        reload(store, indicator);
+    }
+
+    // Swaps in other data: cached charts are dropped
+    void reload(DataStore newStore, Indicator newIndicator) {
+        ChartBuilder builder = new ChartBuilder(newStore, newIndicator);
+        StoryEngine stories = new StoryEngine(newStore, builder.getAggregates(), newIndicator);
+        QueryEngine queries = new QueryEngine(newStore);
+        synchronized (this) {
+            data = new Data(newIndicator, newStore, builder, stories, queries, data == null ? 0 : data.version + 1);
+        }
+        chartCache.invalidateAll();
+    }
+
+    // Writes changed values into the store in place; cached charts are dropped. The values and
+    // the aggregates change under the store's write lock, so a chart built meanwhile on another
+    // thread sees the batch either whole or not at all. Runs off the EDT, since it waits for the
+    // chart builds in flight; false when the batch is for data replaced since.
+    boolean applyUpdates(CellUpdates updates) {
+        Data current = data;
+        if (current.store != updates.store()) {
+            return false;
+        }
+        Lock write = updates.store().lock().writeLock();
+        // tryLock() takes the lock without queueing for it: a queued writer would hold up every
+        // later reader, the EDT among them, until the chart builds before it are done
+        while (!write.tryLock()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        try {
+            updates.apply();
+            current.builder.getAggregates().update(updates);
+        } finally {
+            write.unlock();
+        }
+        synchronized (this) {
+            if (data.store == updates.store()) {
+                data = data.withVersion(data.version + 1);
+            }
+        }
+        chartCache.invalidateAll();
+        return true;
+    }
+
+    // Runs reader under the read lock of the current store, for reads on any thread while live
+    // updates may be written
+    <T> T read(Supplier<T> reader) {
+        Lock read = data.store.lock().readLock();
+        read.lock();
+        try {
+            return reader.get();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    Indicator indicator() {
+        return data.indicator;
+    }
+
+    DataStore store() {
+        return data.store;
+    }
+
+    ChartBuilder builder() {
+        return data.builder;
+    }
+
+    StoryEngine stories() {
+        return data.stories;
+    }
+
+    ChartCache<ChartView> cache() {
+        return chartCache;
+    }
+
+    ChartCache.Key key(String selection, ChartType type, int sex) {
+        return key(data, selection, type, sex);
+    }
+
+    private static ChartCache.Key key(Data data, String selection, ChartType type, int sex) {
+        return new ChartCache.Key(selection, type.id(), data.store.sexName(sex), data.version);
+    }
+
+    // The cached view, or a new one that is then cached
+    ChartView view(String selection, ChartType type, int sex) {
+        Data current = data;
+        ChartCache.Key key = key(current, selection, type, sex);
+        ChartView view = chartCache.get(key);
+        if (view == null) {
+            view = build(current, selection, type, sex);
+            chartCache.put(key, view);
+        }
+        return view;
+    }
+
+    // Builds the chart and its story; the dashboard runs this on its chart executor, not the EDT
+    ChartView build(String selection, ChartType type, int sex) {
+        return build(data, selection, type, sex);
+    }
+
+    private static ChartView build(Data data, String selection, ChartType type, int sex) {
+        long start = System.nanoTime();
+        Lock read = data.store.lock().readLock();
+        read.lock();
+        try {
+            RowSet rows = groupRows(data, selection, sex);
+            ChartView view = rows == null
+                    ? new ChartView(data.builder.createChart(selection, type, sex), data.stories.story(selection, type, sex))
+                    : new ChartView(data.builder.createChart(groupName(selection), rows, type),
+                            data.stories.story(groupName(selection), rows, type));
+            Instrumentation.record(Instrumentation.CHART_BUILD, start);
+            return view;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // Builds views ahead of use into the cache, unless they are cached already, then builds and
+    // draws them rounds more times and sorts the dataset table by each column, so the classes
+    // are loaded and the hot code compiled before the user asks for a chart. Entries that are
+    // not in the data are skipped; stops when the data is replaced. The charts drawn here are
+    // extra copies, never the cached ones, which may be on screen.
+    void warmUp(List<DashboardSession.View> views, int sex, int rounds) {
+        Data warm = data;
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        List<DashboardSession.View> known = new ArrayList<>();
+        for (DashboardSession.View view : views) {
+            if (data.store != warm.store) {
+                return;
+            }
+            try {
+                // Keyed before building, so a chart of data changed meanwhile is never found
+                ChartCache.Key key = key(warm, view.selection, view.type, sex);
+                chartCache.putIfAbsent(key, build(warm, view.selection, view.type, sex));
+                known.add(view);
+            } catch (RuntimeException e) {
+                // Not in this data, e.g. a country of another dataset
+            }
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (DashboardSession.View view : known) {
+                if (data.store != warm.store) {
+                    return;
+                }
+                ChartView copy = build(warm, view.selection, view.type, sex);
+                DownsampledXYDataset.resample(copy.chart, image.getWidth());
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    copy.chart.draw(g2, new Rectangle(image.getWidth(), image.getHeight()));
+                } finally {
+                    g2.dispose();
+                }
+            }
+        }
+        Lock read = warm.store.lock().readLock();
+        read.lock();
+        try {
+            DatasetTableModel model = new DatasetTableModel(warm.store);
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                model.sort(column, true);
+            }
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // Rows of a region or income group entry of the selector in one sex; null for a country or All Countries
+    private static RowSet groupRows(Data data, String selection, int sex) {
+        if (selection.endsWith(REGION_SUFFIX)) {
+            return data.queries.query().regions(groupName(selection)).sexes(data.store.sexName(sex)).execute();
+        }
+        if (selection.endsWith(INCOME_GROUP_SUFFIX)) {
+            return data.queries.query().incomeGroups(groupName(selection)).sexes(data.store.sexName(sex)).execute();
+        }
+        return null;
+    }
+
+    static boolean isGroup(String selection) {
+        return selection.endsWith(REGION_SUFFIX) || selection.endsWith(INCOME_GROUP_SUFFIX);
+    }
+
+    // "Europe (region)" -> "Europe", for chart titles and stories
+    static String groupName(String selection) {
+        return selection.substring(0, selection.lastIndexOf(" ("));
+    }
+
+    // Entries of the country selector: countries, All Countries, regions and income groups
+    List<String> selectorItems() {
+        DataStore current = data.store;
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < current.countryCount(); i++) {
+            items.add(current.countryName(i));
+        }
+        items.add(ALL_COUNTRIES);
+        for (int r = 0; r < current.regionCount(); r++) {
+            items.add(current.regionName(r) + REGION_SUFFIX);
+        }
+        for (int g = 0; g < current.incomeGroupCount(); g++) {
+            items.add(current.incomeGroupName(g) + INCOME_GROUP_SUFFIX);
+        }
+        return items;
+    }
+
+    // Table model of the "View Dataset" window; cells are read on demand from the store
+    DatasetTableModel datasetModel() {
+        return new DatasetTableModel(data.store);
+    }
+}
@@ -0,0 +1,462 @@
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Columnar store for the life expectancy data.
+// Countries, metrics and sexes are dictionary encoded, and every value lives in
+// a single double column laid out as [country][metric][sex][year], so a series
+// for one country, metric and sex is a contiguous run of doubles, the sexes of a metric
+// sit side by side and a country's cells are one block. Missing values are NaN.
+// Each country can also belong to a region (e.g. a WHO region), used for rollups, and to
+// an income group (e.g. a World Bank income classification), used for filtering.
+public final class DataStore {
+
+    public static final String BOTH_SEXES = "Both sexes";
+    public static final String MALE = "Male";
+    public static final String FEMALE = "Female";
+
+    private final String[] countries;
+    private final String[] metrics;
+    private final String[] sexes;
+    private final int[] years;
+    // Volatile so the heap copy made on the first write to a snapshot mapping is seen whole
+    private volatile DoubleBuffer values;
+    private final int defaultSex;
+    private final String[] regions;
+    private final int[] countryRegions;
+    private final String[] incomeGroups;
+    private final int[] countryIncomeGroups;
+
+    // Bumped on every in-place value change, so derived data can tell it is stale
+    private volatile long version;
+
+    // Held for writing while a batch of CellUpdates and the aggregates derived from it are
+    // applied. Threads that read the store while another thread may apply updates (chart
+    // builders, report pages, playback frames, ingestion) hold it for reading around a whole
+    // chart, page or frame, so they never see half of a batch. Fair, so a batch is not held
+    // off by a stream of readers.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    DataStore(String[] countries, String[] metrics, String[] sexes, int[] years, DoubleBuffer values,
+              String[] regions, int[] countryRegions, String[] incomeGroups, int[] countryIncomeGroups) {
+        if (countryRegions.length != countries.length || countryIncomeGroups.length != countries.length) {
+            throw new IllegalArgumentException("Expected a region and income group for each of the " + countries.length + " countries");
+        }
+        long cells = (long) countries.length * metrics.length * sexes.length * years.length;
+        if (values.capacity() != cells) {
+            throw new IllegalArgumentException("Expected " + cells + " values but got " + values.capacity());
+        }
+        this.countries = countries;
+        this.metrics = metrics;
+        this.sexes = sexes;
+        this.years = years;
+        this.values = values;
+        this.regions = regions;
+        this.countryRegions = countryRegions;
+        this.incomeGroups = incomeGroups;
+        this.countryIncomeGroups = countryIncomeGroups;
+
+        int both = Arrays.asList(sexes).indexOf(BOTH_SEXES);
+        this.defaultSex = both >= 0 ? both : 0;
+    }
+
+    // Opens a snapshot (*.snap) through a memory mapping, anything else is parsed as CSV/TSV
+    // in parallel
+    public static DataStore open(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".snap")) {
+            return SnapshotFile.open(path);
+        }
+        return ParallelCsvLoader.load(path);
+    }
+
+    public int countryCount() {
+        return countries.length;
+    }
+
+    public String countryName(int country) {
+        return countries[country];
+    }
+
+    public int countryIndex(String country) {
+        for (int i = 0; i < countries.length; i++) {
+            if (countries[i].equals(country)) {
+                return i;
+            }
+        }
+        return -1; // Default value if country not found
+    }
+
+    public int regionCount() {
+        return regions.length;
+    }
+
+    public String regionName(int region) {
+        return regions[region];
+    }
+
+    public int regionIndex(String region) {
+        return Arrays.asList(regions).indexOf(region);
+    }
+
+    // The country's region, or -1 when the data did not assign one
+    public int countryRegion(int country) {
+        return countryRegions[country];
+    }
+
+    public int incomeGroupCount() {
+        return incomeGroups.length;
+    }
+
+    public String incomeGroupName(int incomeGroup) {
+        return incomeGroups[incomeGroup];
+    }
+
+    public int incomeGroupIndex(String incomeGroup) {
+        return Arrays.asList(incomeGroups).indexOf(incomeGroup);
+    }
+
+    // The country's income group, or -1 when the data did not assign one
+    public int countryIncomeGroup(int country) {
+        return countryIncomeGroups[country];
+    }
+
+    public int metricCount() {
+        return metrics.length;
+    }
+
+    public String metricName(int metric) {
+        return metrics[metric];
+    }
+
+    public int metricIndex(String metric) {
+        return Arrays.asList(metrics).indexOf(metric);
+    }
+
+    public int sexCount() {
+        return sexes.length;
+    }
+
+    public String sexName(int sex) {
+        return sexes[sex];
+    }
+
+    public int sexIndex(String sex) {
+        return Arrays.asList(sexes).indexOf(sex);
+    }
+
+    // The sex used when a view does not ask for one: "Both sexes" when present
+    public int defaultSex() {
+        return defaultSex;
+    }
+
+    public int yearCount() {
+        return years.length;
+    }
+
+    public int year(int yearIndex) {
+        return years[yearIndex];
+    }
+
+    public int yearIndex(int year) {
+        int index = Arrays.binarySearch(years, year);
+        return index >= 0 ? index : -1;
+    }
+
+    public double value(int country, int metric, int sex, int yearIndex) {
+        return values.get(offset(country, metric, sex, yearIndex));
+    }
+
+    // Copies the year run of one country, metric and sex into target (at least yearCount() long)
+    // with one bulk read
+    public void series(int country, int metric, int sex, double[] target) {
+        values.get(offset(country, metric, sex, 0), target, 0, years.length);
+    }
+
+    // Changes one value in place. Writes are expected from one thread at a time, holding the
+    // write lock, and callers update any derived data (e.g. AggregateCube) themselves.
+    public void setValue(int country, int metric, int sex, int yearIndex, double value) {
+        if (values.isReadOnly()) {
+            // Read-only snapshot mapping: move the column onto the heap before the first write
+            DoubleBuffer copy = DoubleBuffer.allocate(values.capacity());
+            copy.put(values.duplicate());
+            copy.clear();
+            values = copy;
+        }
+        values.put(offset(country, metric, sex, yearIndex), value);
+        version++;
+    }
+
+    public ReadWriteLock lock() {
+        return lock;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean hasValue(int country, int metric, int sex, int yearIndex) {
+        return !Double.isNaN(value(country, metric, sex, yearIndex));
+    }
+
+    public int cellCount() {
+        return values.capacity();
+    }
+
+    // Approximate heap held by the store; the values of a memory-mapped snapshot are off the heap
+    long heapBytes() {
+        long bytes = values.isDirect() ? 0 : 8L * values.capacity();
+        bytes += 4L * (years.length + countryRegions.length + countryIncomeGroups.length);
+        for (String[] names : new String[][]{countries, metrics, sexes, regions, incomeGroups}) {
+            for (String name : names) {
+                bytes += 48 + 2L * name.length(); // Object headers, array slot and UTF-16 content
+            }
+        }
+        return bytes;
+    }
+
+    // Read-only view of the value column, in offset order
+    DoubleBuffer values() {
+        return values.asReadOnlyBuffer();
+    }
+
+    int offset(int country, int metric, int sex, int yearIndex) {
+        return ((country * metrics.length + metric) * sexes.length + sex) * years.length + yearIndex;
+    }
+
+    // Collects rows into primitive columns and turns them into a DataStore
+    public static final class Builder {
+
+        private final StringDictionary countries = new StringDictionary();
+        private final StringDictionary metrics = new StringDictionary();
+        private final StringDictionary sexes = new StringDictionary();
+        private final StringDictionary regions = new StringDictionary();
+        private int[] countryRegions = new int[0];
+        private final StringDictionary incomeGroups = new StringDictionary();
+        private int[] countryIncomeGroups = new int[0];
+
+        private int[] countryColumn;
+        private int[] metricColumn;
+        private int[] sexColumn;
+        private int[] yearColumn;
+        private double[] valueColumn;
+        private int rowCount;
+
+        public Builder() {
+            this(1024);
+        }
+
+        // Sized up front for about this many rows, so a known-size load does not regrow the columns
+        public Builder(int expectedRows) {
+            int capacity = Math.max(expectedRows, 16);
+            countryColumn = new int[capacity];
+            metricColumn = new int[capacity];
+            sexColumn = new int[capacity];
+            yearColumn = new int[capacity];
+            valueColumn = new double[capacity];
+        }
+
+        public StringDictionary countries() {
+            return countries;
+        }
+
+        public StringDictionary metrics() {
+            return metrics;
+        }
+
+        public StringDictionary sexes() {
+            return sexes;
+        }
+
+        public StringDictionary regions() {
+            return regions;
+        }
+
+        public StringDictionary incomeGroups() {
+            return incomeGroups;
+        }
+
+        public int rowCount() {
+            return rowCount;
+        }
+
+        // Assigns a country to a region; both are codes from this builder's dictionaries
+        public Builder setRegion(int country, int region) {
+            countryRegions = assign(countryRegions, country, region);
+            return this;
+        }
+
+        public Builder setRegion(String country, String region) {
+            return setRegion(countries.encode(country), regions.encode(region));
+        }
+
+        // Assigns a country to an income group; both are codes from this builder's dictionaries
+        public Builder setIncomeGroup(int country, int incomeGroup) {
+            countryIncomeGroups = assign(countryIncomeGroups, country, incomeGroup);
+            return this;
+        }
+
+        public Builder setIncomeGroup(String country, String incomeGroup) {
+            return setIncomeGroup(countries.encode(country), incomeGroups.encode(incomeGroup));
+        }
+
+        // Sets codes[country], growing the array with -1 (unassigned) as needed
+        private static int[] assign(int[] codes, int country, int code) {
+            if (country >= codes.length) {
+                int oldLength = codes.length;
+                codes = Arrays.copyOf(codes, Math.max(country + 1, oldLength * 2));
+                Arrays.fill(codes, oldLength, codes.length, -1);
+            }
+            codes[country] = code;
+            return codes;
+        }
+
+        public Builder add(String country, String metric, String sex, int year, double value) {
+            return add(countries.encode(country), metrics.encode(metric), sexes.encode(sex), year, value);
+        }
+
+        // Adds a row whose keys were encoded with this builder's dictionaries
+        public Builder add(int country, int metric, int sex, int year, double value) {
+            if (rowCount == valueColumn.length) {
+                int capacity = rowCount * 2;
+                countryColumn = Arrays.copyOf(countryColumn, capacity);
+                metricColumn = Arrays.copyOf(metricColumn, capacity);
+                sexColumn = Arrays.copyOf(sexColumn, capacity);
+                yearColumn = Arrays.copyOf(yearColumn, capacity);
+                valueColumn = Arrays.copyOf(valueColumn, capacity);
+            }
+            countryColumn[rowCount] = country;
+            metricColumn[rowCount] = metric;
+            sexColumn[rowCount] = sex;
+            yearColumn[rowCount] = year;
+            valueColumn[rowCount] = value;
+            rowCount++;
+            return this;
+        }
+
+        // Adds every value of another store, with its countries' regions and income groups
+        public Builder addAll(DataStore store) {
+            int[] countryCodes = new int[store.countryCount()];
+            for (int c = 0; c < countryCodes.length; c++) {
+                countryCodes[c] = countries.encode(store.countryName(c));
+                if (store.countryRegion(c) >= 0) {
+                    setRegion(countryCodes[c], regions.encode(store.regionName(store.countryRegion(c))));
+                }
+                if (store.countryIncomeGroup(c) >= 0) {
+                    setIncomeGroup(countryCodes[c], incomeGroups.encode(store.incomeGroupName(store.countryIncomeGroup(c))));
+                }
+            }
+            int[] metricCodes = new int[store.metricCount()];
+            for (int m = 0; m < metricCodes.length; m++) {
+                metricCodes[m] = metrics.encode(store.metricName(m));
+            }
+            int[] sexCodes = new int[store.sexCount()];
+            for (int s = 0; s < sexCodes.length; s++) {
+                sexCodes[s] = sexes.encode(store.sexName(s));
+            }
+            for (int c = 0; c < countryCodes.length; c++) {
+                for (int m = 0; m < metricCodes.length; m++) {
+                    for (int s = 0; s < sexCodes.length; s++) {
+                        for (int y = 0; y < store.yearCount(); y++) {
+                            double value = store.value(c, m, s, y);
+                            if (!Double.isNaN(value)) {
+                                add(countryCodes[c], metricCodes[m], sexCodes[s], store.year(y), value);
+                            }
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        // Appends the rows and country groups collected by another builder, translating its codes to ours
+        Builder addAll(Builder other) {
+            int[] countryCodes = remap(other.countries, countries);
+            int[] metricCodes = remap(other.metrics, metrics);
+            int[] sexCodes = remap(other.sexes, sexes);
+            int[] regionCodes = remap(other.regions, regions);
+            int[] incomeGroupCodes = remap(other.incomeGroups, incomeGroups);
+            for (int c = 0; c < Math.min(other.countryRegions.length, countryCodes.length); c++) {
+                if (other.countryRegions[c] >= 0) {
+                    setRegion(countryCodes[c], regionCodes[other.countryRegions[c]]);
+                }
+            }
+            for (int c = 0; c < Math.min(other.countryIncomeGroups.length, countryCodes.length); c++) {
+                if (other.countryIncomeGroups[c] >= 0) {
+                    setIncomeGroup(countryCodes[c], incomeGroupCodes[other.countryIncomeGroups[c]]);
+                }
+            }
+
+            int needed = rowCount + other.rowCount;
+            if (needed > valueColumn.length) {
+                int capacity = Math.max(needed, valueColumn.length * 2);
+                countryColumn = Arrays.copyOf(countryColumn, capacity);
+                metricColumn = Arrays.copyOf(metricColumn, capacity);
+                sexColumn = Arrays.copyOf(sexColumn, capacity);
+                yearColumn = Arrays.copyOf(yearColumn, capacity);
+                valueColumn = Arrays.copyOf(valueColumn, capacity);
+            }
+            for (int row = 0; row < other.rowCount; row++) {
+                countryColumn[rowCount + row] = countryCodes[other.countryColumn[row]];
+                metricColumn[rowCount + row] = metricCodes[other.metricColumn[row]];
+                sexColumn[rowCount + row] = sexCodes[other.sexColumn[row]];
+            }
+            System.arraycopy(other.yearColumn, 0, yearColumn, rowCount, other.rowCount);
+            System.arraycopy(other.valueColumn, 0, valueColumn, rowCount, other.rowCount);
+            rowCount = needed;
+            return this;
+        }
+
+        // One code per country, -1 where none was assigned
+        private int[] perCountry(int[] assigned) {
+            int[] codes = new int[countries.size()];
+            Arrays.fill(codes, -1);
+            System.arraycopy(assigned, 0, codes, 0, Math.min(assigned.length, codes.length));
+            return codes;
+        }
+
+        private static int[] remap(StringDictionary from, StringDictionary to) {
+            int[] codes = new int[from.size()];
+            for (int code = 0; code < codes.length; code++) {
+                codes[code] = to.encode(from.get(code));
+            }
+            return codes;
+        }
+
+        public DataStore build() {
+            // Distinct sorted years form the year axis
+            int[] sorted = Arrays.copyOf(yearColumn, rowCount);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            int[] years = Arrays.copyOf(sorted, distinct);
+
+            int metricCount = metrics.size();
+            int sexCount = Math.max(sexes.size(), 1);
+            long cells = (long) countries.size() * metricCount * sexCount * years.length;
+            if (cells > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Dataset too large: " + cells + " cells");
+            }
+            double[] cube = new double[(int) cells];
+            Arrays.fill(cube, Double.NaN);
+
+            // Later rows win when the same cell appears twice
+            for (int row = 0; row < rowCount; row++) {
+                int yearIndex = Arrays.binarySearch(years, yearColumn[row]);
+                int offset = ((countryColumn[row] * metricCount + metricColumn[row]) * sexCount + sexColumn[row])
+                        * years.length + yearIndex;
+                cube[offset] = valueColumn[row];
+            }
+
+            String[] sexNames = sexes.size() > 0 ? sexes.toArray() : new String[]{BOTH_SEXES};
+            return new DataStore(countries.toArray(), metrics.toArray(), sexNames, years, DoubleBuffer.wrap(cube),
+                    regions.toArray(), perCountry(countryRegions), incomeGroups.toArray(), perCountry(countryIncomeGroups));
+        }
+    }
+}
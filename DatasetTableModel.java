@@ -0,0 +1,259 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntFunction;
+
+// Table model for the "View Dataset" window that reads cells on demand from a DataStore.
+// A row is one (country, sex, year) combination and is never materialized;
+// sorting and filtering only rearrange an int permutation of row numbers.
+public class DatasetTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DataStore store;
+    private final boolean showSex;
+    private final int fixedColumns;
+    private final int rowCount;
+
+    // View row -> model row; null while the rows are unsorted and unfiltered
+    private int[] view;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private String countryFilter = "";
+
+    public DatasetTableModel(DataStore store) {
+        this.store = store;
+        this.showSex = store.sexCount() > 1;
+        this.fixedColumns = showSex ? 3 : 2;
+        long rows = (long) store.countryCount() * store.sexCount() * store.yearCount();
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for a table: " + rows);
+        }
+        this.rowCount = (int) rows;
+    }
+
+    @Override
+    public int getRowCount() {
+        return view != null ? view.length : rowCount;
+    }
+
+    // Columns: country, year and one per metric (plus sex when the data is split by sex)
+    @Override
+    public int getColumnCount() {
+        return fixedColumns + store.metricCount();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == 0) {
+            return "Country";
+        }
+        if (showSex && column == 1) {
+            return "Sex";
+        }
+        if (column == fixedColumns - 1) {
+            return "Year";
+        }
+        return store.metricName(column - fixedColumns);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == fixedColumns - 1) {
+            return Integer.class;
+        }
+        return column < fixedColumns ? String.class : Double.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int column) {
+        int row = view != null ? view[rowIndex] : rowIndex;
+        int country = country(row);
+        if (column == 0) {
+            return store.countryName(country);
+        }
+        if (showSex && column == 1) {
+            return store.sexName(sex(row));
+        }
+        if (column == fixedColumns - 1) {
+            return store.year(yearIndex(row));
+        }
+        double value;
+        Lock read = store.lock().readLock();
+        read.lock();
+        try {
+            value = store.value(country, column - fixedColumns, sex(row), yearIndex(row));
+        } finally {
+            read.unlock();
+        }
+        return Double.isNaN(value) ? null : value;
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    // Sorts by the column, flipping the direction when it is already the sort column
+    public void toggleSort(int column) {
+        boolean nextAscending = column != sortColumn || !ascending;
+        sort(column, nextAscending);
+    }
+
+    public void sort(int column, boolean ascending) {
+        this.sortColumn = column;
+        this.ascending = ascending;
+        rebuildView();
+    }
+
+    // Keeps only rows whose country name contains the text (case-insensitive)
+    public void setCountryFilter(String text) {
+        String filter = text.trim().toLowerCase(Locale.ROOT);
+        if (filter.equals(countryFilter)) {
+            return;
+        }
+        countryFilter = filter;
+        rebuildView();
+    }
+
+    private void rebuildView() {
+        int[] rows;
+        if (countryFilter.isEmpty()) {
+            rows = sortColumn < 0 ? null : identity(rowCount);
+        } else {
+            rows = filterRows();
+        }
+        if (rows != null && sortColumn >= 0) {
+            RowComparator comparator = comparator(sortColumn);
+            // Live updates wait for the sort, so values don't change under the comparator
+            Lock read = store.lock().readLock();
+            read.lock();
+            try {
+                sort(rows, ascending ? comparator : (a, b) -> comparator.compare(b, a));
+            } finally {
+                read.unlock();
+            }
+        }
+        view = rows;
+        fireTableDataChanged();
+    }
+
+    private int[] filterRows() {
+        // Decide per country once, then copy the matching row ranges
+        boolean[] matches = new boolean[store.countryCount()];
+        int count = 0;
+        for (int c = 0; c < matches.length; c++) {
+            matches[c] = store.countryName(c).toLowerCase(Locale.ROOT).contains(countryFilter);
+            if (matches[c]) {
+                count++;
+            }
+        }
+        int rowsPerCountry = store.sexCount() * store.yearCount();
+        int[] rows = new int[count * rowsPerCountry];
+        int next = 0;
+        for (int c = 0; c < matches.length; c++) {
+            if (matches[c]) {
+                for (int r = 0; r < rowsPerCountry; r++) {
+                    rows[next++] = c * rowsPerCountry + r;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private RowComparator comparator(int column) {
+        if (column == 0) {
+            int[] rank = rank(store.countryCount(), store::countryName);
+            return (a, b) -> Integer.compare(rank[country(a)], rank[country(b)]);
+        }
+        if (showSex && column == 1) {
+            int[] rank = rank(store.sexCount(), store::sexName);
+            return (a, b) -> Integer.compare(rank[sex(a)], rank[sex(b)]);
+        }
+        if (column == fixedColumns - 1) {
+            return (a, b) -> Integer.compare(yearIndex(a), yearIndex(b));
+        }
+        int metric = column - fixedColumns;
+        return (a, b) -> Double.compare(
+                store.value(country(a), metric, sex(a), yearIndex(a)),
+                store.value(country(b), metric, sex(b), yearIndex(b)));
+    }
+
+    // Alphabetical rank of each dictionary code, so string columns sort by comparing ints
+    private static int[] rank(int count, IntFunction<String> names) {
+        Integer[] codes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, (a, b) -> names.apply(a).compareToIgnoreCase(names.apply(b)));
+        int[] rank = new int[count];
+        for (int i = 0; i < count; i++) {
+            rank[codes[i]] = i;
+        }
+        return rank;
+    }
+
+    private int country(int row) {
+        return row / (store.sexCount() * store.yearCount());
+    }
+
+    private int sex(int row) {
+        return (row / store.yearCount()) % store.sexCount();
+    }
+
+    private int yearIndex(int row) {
+        return row % store.yearCount();
+    }
+
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    // Stable merge sort of row numbers, so rows with equal keys stay in model order
+    static void sort(int[] rows, RowComparator comparator) {
+        int[] copy = rows.clone();
+        mergeSort(copy, rows, 0, rows.length, comparator);
+    }
+
+    // src and dst hold the same rows on entry; the sorted range ends up in dst
+    private static void mergeSort(int[] src, int[] dst, int low, int high, RowComparator comparator) {
+        if (high - low < 16) {
+            for (int i = low + 1; i < high; i++) {
+                for (int j = i; j > low && comparator.compare(dst[j - 1], dst[j]) > 0; j--) {
+                    int swap = dst[j];
+                    dst[j] = dst[j - 1];
+                    dst[j - 1] = swap;
+                }
+            }
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        mergeSort(dst, src, low, mid, comparator);
+        mergeSort(dst, src, mid, high, comparator);
+
+        // Already in order: the halves can be copied as they are
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dst, low, high - low);
+            return;
+        }
+        for (int i = low, p = low, q = mid; i < high; i++) {
+            if (q >= high || (p < mid && comparator.compare(src[p], src[q]) <= 0)) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.DomainInfo;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
+import org.jfree.data.RangeInfo;
+import org.jfree.data.xy.AbstractXYDataset;
+import org.jfree.data.xy.XYDomainInfo;
+import org.jfree.data.xy.XYRangeInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// XY dataset that keeps every point of its series but only hands the renderer as
+// many as the chart can show at its current width.
+// Line charts use Largest-Triangle-Three-Buckets, which keeps the visible shape of a
+// trend; scatter plots keep the lowest and highest point of every pixel column.
+// resample() picks the points for the visible x range, so zooming in brings the
+// detail back while drawing and tooltip hit-testing stay bounded by the pixel width.
+// Domain bounds are reported for the full data, so auto-range and "zoom out" still
+// cover every point; range bounds within an x range come from the shown points,
+// which keep each series' extremes.
+public class DownsampledXYDataset extends AbstractXYDataset
+        implements DomainInfo, RangeInfo, XYDomainInfo, XYRangeInfo {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Method {
+        LTTB, MIN_MAX
+    }
+
+    // Pixel width assumed until the chart is drawn somewhere; the dashboard's default chart width
+    public static final int DEFAULT_PIXEL_WIDTH = 800;
+
+    private final Method method;
+    private final List<String> keys = new ArrayList<>();
+    // Series index by key, for the visible-series bounds the plot asks for on every redraw
+    private final Map<String, Integer> seriesIndex = new HashMap<>();
+    private final List<double[]> xValues = new ArrayList<>();
+    private final List<double[]> yValues = new ArrayList<>();
+
+    // Indices of the points currently shown for each series; null shows every point
+    private final List<int[]> visible = new ArrayList<>();
+
+    private double minX = Double.NaN;
+    private double maxX = Double.NaN;
+    private double minY = Double.NaN;
+    private double maxY = Double.NaN;
+
+    // Set by setValue while notifications are off; bounds and samples are then refreshed once
+    private boolean stale;
+
+    private double lower = Double.NEGATIVE_INFINITY;
+    private double upper = Double.POSITIVE_INFINITY;
+    private int pixelWidth = DEFAULT_PIXEL_WIDTH;
+
+    public DownsampledXYDataset(Method method) {
+        this.method = method;
+    }
+
+    // Adds a series; x values must be in ascending order and y values must not be NaN
+    public void addSeries(String key, double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length");
+        }
+        seriesIndex.putIfAbsent(key, keys.size());
+        keys.add(key);
+        xValues.add(x);
+        yValues.add(y);
+        double previousMinX = minX;
+        double previousMaxX = maxX;
+        include(x, y);
+        visible.add(select(x, y));
+
+        // Min/max columns span the x bounds of all series, so the series added before were
+        // sampled into columns that no longer fit once this one widened the bounds
+        if (method == Method.MIN_MAX && keys.size() > 1
+                && (Double.compare(minX, previousMinX) != 0 || Double.compare(maxX, previousMaxX) != 0)) {
+            for (int series = 0; series < keys.size() - 1; series++) {
+                visible.set(series, select(xValues.get(series), yValues.get(series)));
+            }
+        }
+        fireDatasetChanged();
+    }
+
+    // Widens the bounds to the points of a series
+    private void include(double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            minX = Double.isNaN(minX) ? x[i] : Math.min(minX, x[i]);
+            maxX = Double.isNaN(maxX) ? x[i] : Math.max(maxX, x[i]);
+            minY = Double.isNaN(minY) ? y[i] : Math.min(minY, y[i]);
+            maxY = Double.isNaN(maxY) ? y[i] : Math.max(maxY, y[i]);
+        }
+    }
+
+    // Sets the y value at x, adding a point when the series has none there.
+    // With notifications off (setNotify(false)) the bounds and samples are refreshed when
+    // they are turned back on, so a batch of changes costs one refresh and one change event.
+    public void setValue(int series, double x, double y) {
+        double[] xs = xValues.get(series);
+        int index = Arrays.binarySearch(xs, x);
+        if (index >= 0) {
+            yValues.get(series)[index] = y;
+        } else {
+            int at = -index - 1;
+            xValues.set(series, insert(xs, at, x));
+            yValues.set(series, insert(yValues.get(series), at, y));
+        }
+        stale = true;
+        if (getNotify()) {
+            refresh();
+            fireDatasetChanged();
+        }
+    }
+
+    // Replaces the points of a series, keeping its key; same rules as addSeries.
+    // Like setValue, a batch with notifications off costs one refresh and one change event.
+    public void setSeries(int series, double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length");
+        }
+        xValues.set(series, x);
+        yValues.set(series, y);
+        stale = true;
+        if (getNotify()) {
+            refresh();
+            fireDatasetChanged();
+        }
+    }
+
+    @Override
+    public void setNotify(boolean notify) {
+        if (notify && stale) {
+            refresh();
+        }
+        super.setNotify(notify);
+    }
+
+    private static double[] insert(double[] array, int at, double value) {
+        double[] grown = new double[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, at);
+        grown[at] = value;
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        return grown;
+    }
+
+    private void refresh() {
+        minX = Double.NaN;
+        maxX = Double.NaN;
+        minY = Double.NaN;
+        maxY = Double.NaN;
+        // Bounds over every series first: min/max sampling divides the full x range into columns
+        for (int series = 0; series < keys.size(); series++) {
+            include(xValues.get(series), yValues.get(series));
+        }
+        for (int series = 0; series < keys.size(); series++) {
+            visible.set(series, select(xValues.get(series), yValues.get(series)));
+        }
+        stale = false;
+    }
+
+    // Picks the points to draw for the visible x range and the plot width in pixels
+    public void resample(double lower, double upper, int pixelWidth) {
+        int width = Math.max(1, pixelWidth);
+        if (lower == this.lower && upper == this.upper && width == this.pixelWidth) {
+            return;
+        }
+        this.lower = lower;
+        this.upper = upper;
+        this.pixelWidth = width;
+        for (int series = 0; series < keys.size(); series++) {
+            visible.set(series, select(xValues.get(series), yValues.get(series)));
+        }
+        fireDatasetChanged();
+    }
+
+    // Resamples every downsampled dataset of an XY chart for its current domain range
+    public static void resample(JFreeChart chart, int pixelWidth) {
+        Plot plot = chart.getPlot();
+        if (!(plot instanceof XYPlot)) {
+            return;
+        }
+        XYPlot xyPlot = (XYPlot) plot;
+        for (int i = 0; i < xyPlot.getDatasetCount(); i++) {
+            if (xyPlot.getDataset(i) instanceof DownsampledXYDataset) {
+                ValueAxis axis = xyPlot.getDomainAxisForDataset(i);
+                Range range = axis.getRange();
+                ((DownsampledXYDataset) xyPlot.getDataset(i)).resample(range.getLowerBound(), range.getUpperBound(), pixelWidth);
+            }
+        }
+    }
+
+    // Number of points in the series, shown or not
+    public int getTotalItemCount(int series) {
+        return xValues.get(series).length;
+    }
+
+    private int[] select(double[] x, double[] y) {
+        int threshold = method == Method.LTTB ? pixelWidth : 2 * pixelWidth;
+        if (x.length <= threshold) {
+            return null;
+        }
+
+        // The visible range plus one point on either side, so lines run on to the edge
+        int from = Math.max(0, firstIndexAtLeast(x, lower) - 1);
+        int to = Math.min(x.length, firstIndexAbove(x, upper) + 1);
+        if (method == Method.LTTB) {
+            return largestTriangleThreeBuckets(x, y, from, to, threshold);
+        }
+        return minMaxPerColumn(x, y, from, to, Math.max(minX, lower), Math.min(maxX, upper), pixelWidth);
+    }
+
+    private static int firstIndexAtLeast(double[] x, double value) {
+        int low = 0;
+        int high = x.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (x[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstIndexAbove(double[] x, double value) {
+        int low = 0;
+        int high = x.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (x[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Keeps the first and last point and, from each of threshold - 2 buckets in between,
+    // the point forming the largest triangle with the previous pick and the next bucket's mean
+    static int[] largestTriangleThreeBuckets(double[] x, double[] y, int from, int to, int threshold) {
+        int count = to - from;
+        if (count <= threshold || threshold < 3) {
+            return range(from, to);
+        }
+        int[] picked = new int[threshold];
+        int size = 0;
+        picked[size++] = from;
+
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int previous = from;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = from + 1 + (int) (bucket * bucketSize);
+            int end = from + 1 + (int) ((bucket + 1) * bucketSize);
+
+            // Mean of the next bucket; the last bucket looks ahead to the final point
+            int nextStart = end;
+            int nextEnd = Math.min(from + 1 + (int) ((bucket + 2) * bucketSize), to - 1);
+            double meanX;
+            double meanY;
+            if (nextStart >= nextEnd) {
+                meanX = x[to - 1];
+                meanY = y[to - 1];
+            } else {
+                meanX = 0;
+                meanY = 0;
+                for (int i = nextStart; i < nextEnd; i++) {
+                    meanX += x[i];
+                    meanY += y[i];
+                }
+                meanX /= nextEnd - nextStart;
+                meanY /= nextEnd - nextStart;
+            }
+
+            int best = start;
+            double bestArea = -1;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - meanX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (meanY - y[previous]));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            picked[size++] = best;
+            previous = best;
+        }
+        picked[size++] = to - 1;
+        return picked;
+    }
+
+    // Keeps the lowest and highest point of each pixel column, in x order
+    static int[] minMaxPerColumn(double[] x, double[] y, int from, int to, double lower, double upper, int columns) {
+        int[] picked = new int[2 * columns + 4];
+        int size = 0;
+        double scale = upper > lower ? columns / (upper - lower) : 0;
+
+        int column = Integer.MIN_VALUE;
+        int min = -1;
+        int max = -1;
+        for (int i = from; i < to; i++) {
+            int c = (int) Math.max(-1, Math.min(columns, Math.floor((x[i] - lower) * scale)));
+            if (c != column) {
+                size = flush(picked, size, min, max);
+                column = c;
+                min = i;
+                max = i;
+            } else if (y[i] < y[min]) {
+                min = i;
+            } else if (y[i] > y[max]) {
+                max = i;
+            }
+        }
+        size = flush(picked, size, min, max);
+        return Arrays.copyOf(picked, size);
+    }
+
+    private static int flush(int[] picked, int size, int min, int max) {
+        if (min < 0) {
+            return size;
+        }
+        picked[size++] = Math.min(min, max);
+        if (min != max) {
+            picked[size++] = Math.max(min, max);
+        }
+        return size;
+    }
+
+    private static int[] range(int from, int to) {
+        int[] indices = new int[to - from];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = from + i;
+        }
+        return indices;
+    }
+
+    private int index(int series, int item) {
+        int[] shown = visible.get(series);
+        return shown == null ? item : shown[item];
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return keys.size();
+    }
+
+    @Override
+    public Comparable<?> getSeriesKey(int series) {
+        return keys.get(series);
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        int[] shown = visible.get(series);
+        return shown == null ? xValues.get(series).length : shown.length;
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        return xValues.get(series)[index(series, item)];
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        return yValues.get(series)[index(series, item)];
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        return getYValue(series, item);
+    }
+
+    @Override
+    public double getDomainLowerBound(boolean includeInterval) {
+        return minX;
+    }
+
+    @Override
+    public double getDomainUpperBound(boolean includeInterval) {
+        return maxX;
+    }
+
+    @Override
+    public Range getDomainBounds(boolean includeInterval) {
+        return Double.isNaN(minX) ? null : new Range(minX, maxX);
+    }
+
+    @Override
+    public double getRangeLowerBound(boolean includeInterval) {
+        return minY;
+    }
+
+    @Override
+    public double getRangeUpperBound(boolean includeInterval) {
+        return maxY;
+    }
+
+    @Override
+    public Range getRangeBounds(boolean includeInterval) {
+        return Double.isNaN(minY) ? null : new Range(minY, maxY);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // XYDomainInfo and XYRangeInfo declare a raw List
+    public Range getDomainBounds(List visibleSeriesKeys, boolean includeInterval) {
+        Range bounds = null;
+        for (Object key : visibleSeriesKeys) {
+            int series = seriesIndex.getOrDefault(key, -1);
+            if (series >= 0 && xValues.get(series).length > 0) {
+                double[] x = xValues.get(series);
+                bounds = Range.combine(bounds, new Range(x[0], x[x.length - 1]));
+            }
+        }
+        return bounds;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // XYDomainInfo and XYRangeInfo declare a raw List
+    public Range getRangeBounds(List visibleSeriesKeys, Range xRange, boolean includeInterval) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Object key : visibleSeriesKeys) {
+            int series = seriesIndex.getOrDefault(key, -1);
+            if (series < 0) {
+                continue;
+            }
+            for (int item = 0; item < getItemCount(series); item++) {
+                if (xRange.contains(getXValue(series, item))) {
+                    double y = getYValue(series, item);
+                    min = Math.min(min, y);
+                    max = Math.max(max, y);
+                }
+            }
+        }
+        return min <= max ? new Range(min, max) : null;
+    }
+}
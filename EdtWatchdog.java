@@ -0,0 +1,118 @@
+import javax.swing.SwingUtilities;
+import java.awt.Window;
+import java.util.concurrent.TimeUnit;
+
+// Detects when the Swing event dispatch thread stops processing events.
+// While a window is open, a daemon thread posts a heartbeat to the EDT every half
+// threshold. When a heartbeat waits longer than the threshold, the EDT's stack trace
+// is logged once for that stall, and the stall's full duration is recorded as
+// Instrumentation.EDT_STALL.
+//
+// The threshold defaults to 200 ms and can be set with -Ddashboard.edtStallMillis=N
+// or through JMX (data.visualization:type=EdtWatchdog).
+public final class EdtWatchdog implements EdtWatchdogMXBean {
+
+    private static final long DEFAULT_THRESHOLD_MILLIS = 200;
+
+    private volatile long thresholdMillis;
+    private volatile Thread dispatchThread;
+
+    // System.nanoTime() when the pending heartbeat was posted; 0 when none is pending
+    private volatile long pendingSince;
+    private volatile boolean reported;
+
+    private volatile long stallCount;
+    private volatile long longestStallNanos;
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    // Starts the watchdog; call once, e.g. from main
+    public static EdtWatchdog start() {
+        EdtWatchdog watchdog = new EdtWatchdog(Long.getLong("dashboard.edtStallMillis", DEFAULT_THRESHOLD_MILLIS));
+        Thread thread = new Thread(watchdog::run, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+        Instrumentation.registerMBean(watchdog, "type=EdtWatchdog");
+        return watchdog;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                TimeUnit.MILLISECONDS.sleep(Math.max(1, thresholdMillis / 2));
+                long since = pendingSince;
+                if (since == 0 && hasWindow()) {
+                    long posted = System.nanoTime();
+                    pendingSince = posted;
+                    SwingUtilities.invokeLater(() -> heartbeat(posted));
+                } else if (since != 0 && !reported && System.nanoTime() - since > TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+                    reported = true;
+                    report(System.nanoTime() - since);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Heartbeats only while a window is open, so they don't keep AWT from shutting down
+    private static boolean hasWindow() {
+        for (Window window : Window.getWindows()) {
+            if (window.isDisplayable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void heartbeat(long posted) {
+        dispatchThread = Thread.currentThread();
+        long waited = System.nanoTime() - posted;
+        if (waited > TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+            stallCount++;
+            longestStallNanos = Math.max(longestStallNanos, waited);
+            Instrumentation.recordNanos(Instrumentation.EDT_STALL, waited);
+            System.err.printf("EDT stall ended after %d ms%n", TimeUnit.NANOSECONDS.toMillis(waited));
+        }
+        reported = false;
+        pendingSince = 0;
+    }
+
+    private void report(long blockedNanos) {
+        StringBuilder message = new StringBuilder();
+        message.append("EDT blocked for ").append(TimeUnit.NANOSECONDS.toMillis(blockedNanos)).append(" ms");
+        Thread thread = dispatchThread;
+        if (thread != null) {
+            message.append(", stack of ").append(thread.getName()).append(':');
+            for (StackTraceElement element : thread.getStackTrace()) {
+                message.append(System.lineSeparator()).append("\tat ").append(element);
+            }
+        }
+        System.err.println(message);
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        if (thresholdMillis < 1) {
+            throw new IllegalArgumentException("thresholdMillis must be at least 1");
+        }
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    @Override
+    public long getStallCount() {
+        return stallCount;
+    }
+
+    @Override
+    public double getLongestStallMillis() {
+        return longestStallNanos / 1e6;
+    }
+}
@@ -0,0 +1,11 @@
+// JMX view of the EdtWatchdog, registered as data.visualization:type=EdtWatchdog
+public interface EdtWatchdogMXBean {
+
+    long getThresholdMillis();
+
+    void setThresholdMillis(long thresholdMillis);
+
+    long getStallCount();
+
+    double getLongestStallMillis();
+}
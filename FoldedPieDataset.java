@@ -0,0 +1,158 @@
+import org.jfree.data.general.DefaultPieDataset;
+
+import java.util.Arrays;
+
+// Pie dataset that stays readable however many entries it is given: the largest entries get
+// slices of their own and the rest are folded into one "Other (k)" slice, so a pie never has
+// more than limit slices to label, list in the legend and paint.
+// The largest entries are found by partial selection (quickselect, linear on average) instead
+// of a full sort, and the folded entries are kept as indexes, so expanding "Other" builds a
+// dataset from just those entries when it is asked for. Entries without a value (NaN) are left out.
+public final class FoldedPieDataset extends DefaultPieDataset<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Slices per pie, "Other" included; -Ddashboard.pieSlices=N
+    public static final int DEFAULT_LIMIT = Math.max(2, Integer.getInteger("dashboard.pieSlices", 10));
+
+    private final String[] names;
+    private final double[] values;
+    private final int limit;
+    private int[] folded = new int[0];
+    private String otherKey;
+
+    public FoldedPieDataset(String[] names, double[] values, int limit) {
+        if (names.length != values.length) {
+            throw new IllegalArgumentException("Expected a value for each of the " + names.length + " names");
+        }
+        if (limit < 2) {
+            throw new IllegalArgumentException("limit must be at least 2");
+        }
+        this.names = names;
+        this.values = values;
+        this.limit = limit;
+        fold();
+    }
+
+    // Number of entries in the "Other" slice
+    public int foldedCount() {
+        return folded.length;
+    }
+
+    // Number of entries with a value, shown or folded
+    public int entryCount() {
+        return getItemCount() - (otherKey == null ? 0 : 1) + folded.length;
+    }
+
+    public boolean isOther(String key) {
+        return key.equals(otherKey);
+    }
+
+    // Changes the value of an entry and folds again; like other dataset changes, one change
+    // event, or none while notifications are off (setNotify(false))
+    public void setEntry(String name, double value) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                values[i] = value;
+                fold();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown entry: " + name);
+    }
+
+    // The entries folded into "Other", as a pie of their own folded at the same limit; null when none are
+    public FoldedPieDataset expandOther() {
+        if (folded.length == 0) {
+            return null;
+        }
+        String[] otherNames = new String[folded.length];
+        double[] otherValues = new double[folded.length];
+        for (int i = 0; i < folded.length; i++) {
+            otherNames[i] = names[folded[i]];
+            otherValues[i] = values[folded[i]];
+        }
+        return new FoldedPieDataset(otherNames, otherValues, limit);
+    }
+
+    private void fold() {
+        int[] present = new int[values.length];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                present[count++] = i;
+            }
+        }
+        present = Arrays.copyOf(present, count);
+        int shown = count <= limit ? count : limit - 1;
+        selectLargest(present, values, shown);
+
+        // Only the shown entries are sorted, largest first
+        for (int i = 1; i < shown; i++) {
+            int index = present[i];
+            int j = i - 1;
+            for (; j >= 0 && values[present[j]] < values[index]; j--) {
+                present[j + 1] = present[j];
+            }
+            present[j + 1] = index;
+        }
+
+        boolean notify = getNotify();
+        setNotify(false);
+        clear();
+        for (int i = 0; i < shown; i++) {
+            setValue(names[present[i]], values[present[i]]);
+        }
+        folded = Arrays.copyOfRange(present, shown, count);
+        otherKey = null;
+        if (folded.length > 0) {
+            double sum = 0;
+            for (int index : folded) {
+                sum += values[index];
+            }
+            otherKey = "Other (" + folded.length + ")";
+            setValue(otherKey, sum);
+        }
+        if (notify) {
+            setNotify(true);
+        }
+    }
+
+    // Reorders indexes so that the first k point at the k largest values, in no particular order
+    static void selectLargest(int[] indexes, double[] values, int k) {
+        int low = 0;
+        int high = indexes.length - 1;
+        while (low < high && k > low && k <= high) {
+            // Median of three as the pivot, then partition larger values to the left
+            int mid = (low + high) >>> 1;
+            double pivot = median(values[indexes[low]], values[indexes[mid]], values[indexes[high]]);
+            int left = low;
+            int right = high;
+            while (left <= right) {
+                while (values[indexes[left]] > pivot) {
+                    left++;
+                }
+                while (values[indexes[right]] < pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    int swap = indexes[left];
+                    indexes[left++] = indexes[right];
+                    indexes[right--] = swap;
+                }
+            }
+            // [low, right] >= pivot >= [left, high]
+            if (k <= right) {
+                high = right;
+            } else if (k >= left) {
+                low = left;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
@@ -0,0 +1,128 @@
+import javax.swing.*;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+// Plays a PlaybackChart through its frames at a steady rate.
+// A background thread computes frames ahead into a small ring buffer; a Swing timer on the
+// EDT shows the frame that is due by the clock, so the pace does not depend on how long
+// frames take. When painting falls behind, or a frame is not computed yet, the EDT never
+// waits: the frames whose time has passed are dropped and playback continues with the
+// one due next. The time between shown frames goes to the playback.frame histogram.
+final class FramePlayer {
+
+    // Frames computed ahead of the one shown
+    private static final int RING_SIZE = 8;
+
+    // -Ddashboard.playbackFps=N
+    static final int DEFAULT_FPS = Math.max(1, Integer.getInteger("dashboard.playbackFps", 5));
+
+    private final PlaybackChart playback;
+    private final long periodNanos;
+    private final Runnable finished;
+    private final double[][] ring;
+    // Free ring slots; the producer takes one per frame, the EDT gives it back once shown or dropped
+    private final Semaphore free;
+    private final Timer timer;
+    private final LatencyHistogram frameTimes = new LatencyHistogram(Instrumentation.PLAYBACK_FRAME);
+    private Thread producer;
+    // Frames computed so far; written by the producer after the frame's values
+    private volatile int produced;
+
+    // EDT state
+    private long startNanos;
+    private long lastFrameNanos;
+    private int next;
+    private int shown;
+    private int dropped;
+    private boolean painted = true;
+
+    FramePlayer(PlaybackChart playback, int framesPerSecond, Runnable finished) {
+        this.playback = playback;
+        this.periodNanos = 1_000_000_000L / framesPerSecond;
+        this.finished = finished;
+        int slots = Math.min(RING_SIZE, playback.frameCount());
+        this.ring = new double[slots][playback.frameSize()];
+        this.free = new Semaphore(slots);
+        // Ticks twice per frame so a frame is shown within half a period of its time
+        this.timer = new Timer(Math.max(1, 500 / framesPerSecond), e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    // Starts from the first frame; call on the EDT
+    void start() {
+        producer = new Thread(this::produce, "playback-frames");
+        producer.setDaemon(true);
+        producer.start();
+        startNanos = System.nanoTime();
+        timer.start();
+    }
+
+    // Stops playback, leaving the chart on the last frame shown; call on the EDT
+    void stop() {
+        timer.stop();
+        if (producer != null) {
+            producer.interrupt();
+        }
+    }
+
+    // Called when the chart has been painted, so the next frame can be applied
+    void framePainted() {
+        painted = true;
+    }
+
+    int shownFrames() {
+        return shown;
+    }
+
+    int droppedFrames() {
+        return dropped;
+    }
+
+    // e.g. "21 frames at 5 fps, 2 dropped; frame time p50 200.1 ms, p99 240.3 ms"
+    String summary() {
+        return String.format(Locale.ROOT, "%d frames at %d fps, %d dropped; frame time p50 %.1f ms, p99 %.1f ms",
+                shown, 1_000_000_000L / periodNanos, dropped, frameTimes.getP50Millis(), frameTimes.getP99Millis());
+    }
+
+    private void produce() {
+        try {
+            for (int frame = 0; frame < playback.frameCount(); frame++) {
+                free.acquire();
+                playback.frame(frame, ring[frame % ring.length]);
+                produced = frame + 1;
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        int due = (int) Math.min((now - startNanos) / periodNanos, playback.frameCount() - 1);
+        if (due < next || (!painted && now - lastFrameNanos < periodNanos)) {
+            return; // Too early, or the last frame is still waiting to be painted
+        }
+        int show = Math.min(due, produced - 1);
+        if (show < next) {
+            return; // Not computed yet; try again on the next tick
+        }
+
+        // Frames between the last one shown and this one came too late to be worth showing
+        dropped += show - next;
+        playback.apply(show, ring[show % ring.length]);
+        free.release(show - next + 1);
+        next = show + 1;
+        shown++;
+        painted = false;
+        if (lastFrameNanos != 0) {
+            frameTimes.recordNanos(now - lastFrameNanos);
+            Instrumentation.recordNanos(Instrumentation.PLAYBACK_FRAME, now - lastFrameNanos);
+        }
+        lastFrameNanos = now;
+
+        if (next == playback.frameCount()) {
+            timer.stop();
+            finished.run();
+        }
+    }
+}
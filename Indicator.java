@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Metadata of one indicator dataset: the name used in the selector and chart titles, the unit
+// of its values and the files its data is read from. The data itself is loaded by an
+// IndicatorRegistry when the indicator is first used.
+public final class Indicator {
+
+    // The life expectancy and HALE data the dashboard started with, from the built-in sample
+    public static final Indicator LIFE_EXPECTANCY = new Indicator("life", "Life Expectancy and HALE", "years",
+            "Life expectancy and healthy life expectancy (HALE) at birth and at age 60.", List.of());
+
+    private final String id;
+    private final String label;
+    private final String unit;
+    private final String description;
+    private final List<Path> files;
+
+    // No files means the built-in sample data
+    public Indicator(String id, String label, String unit, String description, List<Path> files) {
+        this.id = id;
+        this.label = label;
+        this.unit = unit;
+        this.description = description;
+        this.files = List.copyOf(files);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    // e.g. "Life Expectancy and HALE", as in "Life Expectancy and HALE Trends for India"
+    public String label() {
+        return label;
+    }
+
+    // e.g. "years" or "%", as in "81.9 years"
+    public String unit() {
+        return unit;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    public List<Path> files() {
+        return files;
+    }
+
+    // "81.9 years", "92.0%"
+    public String amount(String number) {
+        return unit.isEmpty() || unit.startsWith("%") ? number + unit : number + " " + unit;
+    }
+
+    // Value axis label, e.g. "Value (years)"
+    public String axisLabel(String name) {
+        return unit.isEmpty() ? name : name + " (" + unit + ")";
+    }
+
+    // Reads the indicator's data: one file through DataStore.open, several through the parallel loader
+    DataStore load() throws IOException {
+        if (files.isEmpty()) {
+            return SampleData.load();
+        }
+        if (files.size() == 1) {
+            return DataStore.open(files.get(0));
+        }
+        return ParallelCsvLoader.load(files);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// The indicator datasets the dashboard can switch between, described by a schema file:
+//
+//     indicators = life, mortality
+//     life.label = Life Expectancy and HALE
+//     life.unit = years
+//     life.files = life-expectancy.csv
+//     mortality.label = Under-five Mortality
+//     mortality.unit = deaths per 1,000 live births
+//     mortality.description = Probability of dying by age 5.
+//     mortality.files = mortality-2000-2010.csv, mortality-2011-2021.csv
+//
+// Files are CSV/TSV exports or a snapshot, relative to the schema file; an indicator without
+// files uses the built-in sample data. Only the metadata is read up front: an indicator's data
+// is loaded when it is first used, and loaded stores are kept, most recently used first, while
+// their heap fits the budget (dashboard.indicatorHeapMB, a quarter of the maximum heap by
+// default). The least recently used are released and read again when next used; snapshots are
+// memory mapped and cost next to no heap.
+public final class IndicatorRegistry {
+
+    private final List<Indicator> indicators;
+    private final long heapBudget;
+    // Loaded stores in access order, least recently used first
+    private final LinkedHashMap<Indicator, DataStore> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    private long loads;
+
+    public IndicatorRegistry(List<Indicator> indicators) {
+        this(indicators, Long.getLong("dashboard.indicatorHeapMB", Runtime.getRuntime().maxMemory() / 4 / (1 << 20)) << 20);
+    }
+
+    public IndicatorRegistry(List<Indicator> indicators, long heapBudgetBytes) {
+        if (indicators.isEmpty() || heapBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Need at least one indicator and a positive heap budget");
+        }
+        this.indicators = List.copyOf(indicators);
+        this.heapBudget = heapBudgetBytes;
+    }
+
+    public static IndicatorRegistry load(Path schema) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(schema, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        List<String> ids = new ArrayList<>();
+        String order = properties.getProperty("indicators");
+        if (order != null) {
+            ids.addAll(split(order));
+        } else {
+            for (String key : properties.stringPropertyNames()) {
+                if (key.endsWith(".label")) {
+                    ids.add(key.substring(0, key.length() - ".label".length()));
+                }
+            }
+            ids.sort(null);
+        }
+
+        Path base = schema.toAbsolutePath().getParent();
+        List<Indicator> indicators = new ArrayList<>();
+        for (String id : ids) {
+            String label = properties.getProperty(id + ".label");
+            if (label == null) {
+                throw new IOException(schema + ": indicator " + id + " has no " + id + ".label");
+            }
+            List<Path> files = new ArrayList<>();
+            for (String file : split(properties.getProperty(id + ".files", ""))) {
+                files.add(base.resolve(file));
+            }
+            indicators.add(new Indicator(id, label.trim(), properties.getProperty(id + ".unit", "").trim(),
+                    properties.getProperty(id + ".description", "").trim(), files));
+        }
+        if (indicators.isEmpty()) {
+            throw new IOException(schema + " describes no indicators");
+        }
+        return new IndicatorRegistry(indicators);
+    }
+
+    public List<Indicator> indicators() {
+        return indicators;
+    }
+
+    public Indicator indicator(String id) {
+        for (Indicator indicator : indicators) {
+            if (indicator.id().equals(id)) {
+                return indicator;
+            }
+        }
+        return null;
+    }
+
+    // The indicator's data, loaded on first use or after it was released. Loads run one at a
+    // time, on the calling thread.
+    public synchronized DataStore store(Indicator indicator) throws IOException {
+        DataStore store = loaded.get(indicator);
+        if (store != null) {
+            return store;
+        }
+        store = indicator.load();
+        loads++;
+        loaded.put(indicator, store);
+        residentBytes += store.heapBytes();
+
+        // Release the least recently used until the rest fits; the store just loaded always stays
+        Iterator<Map.Entry<Indicator, DataStore>> eldest = loaded.entrySet().iterator();
+        while (residentBytes > heapBudget && loaded.size() > 1) {
+            Map.Entry<Indicator, DataStore> entry = eldest.next();
+            residentBytes -= entry.getValue().heapBytes();
+            eldest.remove();
+        }
+        return store;
+    }
+
+    public synchronized boolean isLoaded(Indicator indicator) {
+        return loaded.containsKey(indicator);
+    }
+
+    // Heap held by the loaded stores, as estimated by DataStore
+    public synchronized long residentBytes() {
+        return residentBytes;
+    }
+
+    // Number of loads so far, counting each reload of a released indicator
+    public synchronized long loadCount() {
+        return loads;
+    }
+
+    private static List<String> split(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.isBlank()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,107 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Low-overhead timers for the dashboard's interactions.
+// Callers take System.nanoTime() before a step and pass it to record() afterwards.
+// Each named step has a LatencyHistogram, registered with JMX on first use, and is
+// also written as a JFR InteractionEvent while a flight recording is running.
+public final class Instrumentation {
+
+    // From a chart button or country selection to the new chart's first paint
+    public static final String SHOW_VISUALIZATION = "interaction.showVisualization";
+    // Building a chart off the EDT, dataset and story included
+    public static final String CHART_BUILD = "chart.build";
+    // Filling a chart's dataset from the store
+    public static final String DATASET_POPULATION = "chart.dataset";
+    // Swapping the chart panel in and revalidating the layout
+    public static final String CHART_LAYOUT = "chart.layout";
+    // One paint of a chart panel
+    public static final String CHART_PAINT = "chart.paint";
+    // Opening the "View Dataset" window
+    public static final String SHOW_DATASET = "interaction.showDataset";
+    // Time the event dispatch thread was blocked past the watchdog threshold
+    public static final String EDT_STALL = "edt.stall";
+    // Turning new or changed data files into updates for the dashboard
+    public static final String INGEST = "data.ingest";
+    // Parsing data files into a new store with the parallel loader
+    public static final String LOAD = "data.load";
+    // Resolving a filter to a row set with the bitmap indexes
+    public static final String QUERY = "data.query";
+    // Life expectancy vs HALE statistics for the compare view
+    public static final String ANALYSIS = "data.analysis";
+    // Exporting a report of charts and stories to PDF or PNG pages
+    public static final String REPORT_EXPORT = "report.export";
+    // Time between two frames shown by year playback
+    public static final String PLAYBACK_FRAME = "playback.frame";
+    // Building the most used views ahead after launch
+    public static final String WARMUP = "dashboard.warmup";
+    // A /chart request of the HTTP service
+    public static final String HTTP_CHART = "http.chart";
+
+    static final String JMX_DOMAIN = "data.visualization";
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private Instrumentation() {
+    }
+
+    // Records the time since startNanos (from System.nanoTime()) for the named step
+    public static void record(String name, long startNanos) {
+        recordNanos(name, System.nanoTime() - startNanos);
+    }
+
+    public static void recordNanos(String name, long nanos) {
+        histogram(name).recordNanos(nanos);
+        if (JFR_AVAILABLE) {
+            InteractionEvent.emit(name, nanos);
+        }
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            histogram = HISTOGRAMS.computeIfAbsent(name, Instrumentation::register);
+        }
+        return histogram;
+    }
+
+    public static List<LatencyHistogram> histograms() {
+        return new ArrayList<>(new TreeMap<>(HISTOGRAMS).values());
+    }
+
+    // One line per recorded step, sorted by name
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (LatencyHistogram histogram : histograms()) {
+            report.append(histogram).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    private static LatencyHistogram register(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        registerMBean(histogram, "type=Latency,name=" + ObjectName.quote(name));
+        return histogram;
+    }
+
+    // Instrumentation must never break the dashboard, so JMX failures are only logged
+    static void registerMBean(Object bean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":" + properties);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register " + properties + " with JMX: " + e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// JFR event for a timed dashboard interaction; only written while a recording is running,
+// e.g. java -XX:StartFlightRecording=filename=dashboard.jfr ...
+@Name("dashboard.Interaction")
+@Label("Dashboard Interaction")
+@Category("Life Expectancy Dashboard")
+@Description("A timed step such as building a chart, painting it or opening the dataset window")
+@StackTrace(false)
+final class InteractionEvent extends Event {
+
+    @Label("Interaction")
+    String interaction;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long durationNanos;
+
+    static void emit(String interaction, long durationNanos) {
+        InteractionEvent event = new InteractionEvent();
+        if (event.isEnabled()) {
+            event.interaction = interaction;
+            event.durationNanos = durationNanos;
+            event.commit();
+        }
+    }
+}
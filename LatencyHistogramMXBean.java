@@ -0,0 +1,19 @@
+// JMX view of a LatencyHistogram, registered as data.visualization:type=Latency,name=<name>
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
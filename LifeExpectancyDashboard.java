@@ -1,94 +1,250 @@
-import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartMouseEvent;
+import org.jfree.chart.ChartMouseListener;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.CategoryPlot;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.DefaultCategoryDataset;
-import org.jfree.data.general.DefaultPieDataset;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.chart.entity.ChartEntity;
+import org.jfree.chart.entity.PieSectionEntity;
+import org.jfree.chart.plot.PiePlot;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LifeExpectancyDashboard extends JFrame {
 
-    // Sample data
-    private static final String[] COUNTRIES = {"Australia", "China", "India", "United States of America"};
-    private static final int[] YEARS = {2010, 2015, 2019};
-
-    // Data structure for life expectancy and HALE
-    private static final double[][][] LIFE_EXPECTANCY = {
-            // Australia
-            {
-                    {81.9, 80.4, 79.8}, // Life Expectancy at Birth (Both sexes, Male, Female)
-                    {24.7, 23.3, 26.1}, // Life Expectancy at Age 60 (Both sexes, Male, Female)
-                    {70.2, 69.2, 71.2}, // HALE at Birth (Both sexes, Male, Female)
-                    {18.4, 17.5, 19.3}  // HALE at Age 60 (Both sexes, Male, Female)
-            },
-            // China
-            {
-                    {74.9, 73.9, 72.3},
-                    {19.6, 17.9, 21.5},
-                    {66.7, 65.3, 68.2},
-                    {14.9, 14.0, 15.9}
-            },
-            // India
-            {
-                    {67.2, 65.7, 68.9},
-                    {18.0, 16.9, 19.0},
-                    {57.3, 57.0, 57.6},
-                    {12.6, 12.1, 13.0}
-            },
-            // United States of America
-            {
-                    {78.6, 76.3, 80.8},
-                    {23.0, 21.5, 24.2},
-                    {66.7, 65.7, 67.7},
-                    {16.5, 15.6, 17.2}
-            }
-    };
+    private static final long serialVersionUID = 1L;
+
+    private static final String ALL_COUNTRIES = ChartBuilder.ALL_COUNTRIES;
+
+    // Sex toggles: button label and the sex name in the data
+    private static final String[][] SEX_TOGGLES = {
+            {"Both", DataStore.BOTH_SEXES}, {"Male", DataStore.MALE}, {"Female", DataStore.FEMALE}};
+
+    private static final String PLACEHOLDER_CARD = "placeholder";
+
+    // Views built ahead at launch, and how many times more they are built and drawn to warm up
+    private static final int WARMUP_VIEWS = 8;
+    private static final int WARMUP_ROUNDS = 3;
+
+    // Indicators to switch between, or null for a single dataset
+    private final IndicatorRegistry indicators;
+
+    // Charts and stories of the current data, cached; the data is replaced by reloadData.
+    // Null until the data has loaded, while the About screen is up.
+    private DashboardViews views;
+    // Run on the EDT once the data has loaded
+    private final List<Runnable> afterLoad = new ArrayList<>();
+
+    // The view, sex and indicator restored at launch and saved as they change
+    private final DashboardSession session = DashboardSession.load();
 
     // GUI Components
-    private JComboBox<String> countrySelector;
+    private TypeAheadField countrySelector;
+    private final JToggleButton[] sexButtons = new JToggleButton[SEX_TOGGLES.length];
     private JPanel visualizationPanel;
     private JTextArea storyArea;
+    // One chart panel per chart type and the placeholder, as cards in chartCards
+    private JPanel chartCards;
+    private CardLayout chartCardLayout;
+    private JLabel placeholder;
+    private String visibleCard;
     private JPanel buttonPanel;
     private CardLayout cardLayout;
     private JPanel mainPanel;
+    private JButton viewButton;
+
+    // Charts are built off the EDT on a single background thread
+    private final ExecutorService chartExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chart-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SwingWorker<ChartView, Void> pendingChart;
+    // Indicator data is read on its own thread, so chart builds never wait behind a file load
+    private final ExecutorService indicatorExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "indicator-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Changed values from live ingestion are written into the store here, off the EDT, since
+    // the write waits for the chart builds reading the store; only the chart patch is on the EDT
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-updater");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The indicator switch being loaded; chart requests meanwhile only pick what it shows
+    private SwingWorker<DataStore, Void> pendingIndicator;
+
+    private final Map<ChartType, ChartPanel> chartPanels = new EnumMap<>(ChartType.class);
+    private ChartView currentView;
+    private ZoomResampler currentResampler;
+    // Whether the chart shown is not the selection's own view: a pie opened from a slice, or a
+    // playback chart. Such a chart is not cached or updated in place.
+    private boolean transientView;
+    // Year playback of the bar chart or scatter plot; null when not playing
+    private JToggleButton playButton;
+    private FramePlayer player;
+
+    // System.nanoTime() of the chart request waiting for its first paint; 0 when none is
+    private long interactionStart;
+    private ChartType currentChartType = ChartType.BAR;
+    private int currentSex;
 
     // Constructor
-    public LifeExpectancyDashboard() {
+    public LifeExpectancyDashboard(DataStore store) {
+        this(null, Indicator.LIFE_EXPECTANCY, store);
+    }
+
+    // Starts on the indicator's data, already loaded into store; the others are loaded when picked
+    public LifeExpectancyDashboard(IndicatorRegistry indicators, Indicator indicator, DataStore store) {
+        this(indicators);
+        dataLoaded(indicator, store);
+    }
+
+    // Opens on the About screen while loader reads the indicator's data on a background thread,
+    // so the frame can be shown right away; the dashboard is built once the data has loaded
+    public LifeExpectancyDashboard(IndicatorRegistry indicators, Indicator indicator, Callable<DataStore> loader) {
+        this(indicators);
+        loadData(indicator, loader);
+    }
+
+    private LifeExpectancyDashboard(IndicatorRegistry indicators) {
+        this.indicators = indicators;
+
         setTitle("Life Expectancy Dashboard");
         setSize(1200, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
-
-        // Initialize Components
-        initializeComponents();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                session.save();
+            }
+        });
 
         // Setup Card Layout for switching between screens
         cardLayout = new CardLayout();
         mainPanel = new JPanel(cardLayout);
 
-        // About Screen Panel
-        JPanel aboutPanel = createAboutPanel();
-
-        // Add the aboutPanel and dashboard to the card layout
-        mainPanel.add(aboutPanel, "About");
-        mainPanel.add(createDashboardPanel(), "Dashboard");
+        // About Screen Panel; the dashboard is added once the data has loaded
+        mainPanel.add(createAboutPanel(), "About");
 
         // Add the mainPanel (with card layout) to the frame
         add(mainPanel);
     }
 
+    private void loadData(Indicator indicator, Callable<DataStore> loader) {
+        new SwingWorker<DataStore, Void>() {
+            @Override
+            protected DataStore doInBackground() throws Exception {
+                return loader.call();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    dataLoaded(indicator, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    String message = "Could not load " + indicator.label() + ": " + cause.getMessage();
+                    System.err.println(message);
+                    JOptionPane.showMessageDialog(LifeExpectancyDashboard.this, message, getTitle(), JOptionPane.ERROR_MESSAGE);
+                    System.exit(1);
+                }
+            }
+        }.execute();
+    }
+
+    // Builds the dashboard on the data, restores the last session's view and builds the most
+    // used views ahead in the background
+    private void dataLoaded(Indicator indicator, DataStore store) {
+        views = new DashboardViews(store, indicator);
+        session.indicatorShown(indicator);
+        int sex = session.sex() != null ? store.sexIndex(session.sex()) : -1;
+        currentSex = sex >= 0 ? sex : store.defaultSex();
+
+        initializeComponents();
+        mainPanel.add(createDashboardPanel(), "Dashboard");
+
+        // Have the last session's chart, or the first one, ready behind the About screen
+        ChartType type = session.chartType();
+        showVisualization(type != null ? type : ChartType.BAR);
+        viewButton.setText("View Dashboard");
+        viewButton.setEnabled(true);
+        if (session.dashboardShown()) {
+            cardLayout.show(mainPanel, "Dashboard");
+        }
+        startWarmUp();
+
+        for (Runnable task : afterLoad) {
+            task.run();
+        }
+        afterLoad.clear();
+    }
+
+    // Builds the most used views of past sessions, or the first views of a first launch, on a
+    // low-priority thread; -Ddashboard.warmupViews=N, 0 to turn it off
+    private void startWarmUp() {
+        int limit = Integer.getInteger("dashboard.warmupViews", WARMUP_VIEWS);
+        if (limit <= 0) {
+            return;
+        }
+        List<DashboardSession.View> warm = new ArrayList<>(session.mostUsed(limit));
+        if (warm.isEmpty()) {
+            String selection = countrySelector.getSelectedItem();
+            for (ChartType type : ChartType.values()) {
+                warm.add(new DashboardSession.View(selection, type));
+            }
+            warm.add(new DashboardSession.View(ALL_COUNTRIES, ChartType.BAR));
+        }
+        warm.subList(Math.min(limit, warm.size()), warm.size()).clear();
+        DashboardViews target = views;
+        int sex = currentSex;
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            target.warmUp(warm, sex, WARMUP_ROUNDS);
+            Instrumentation.record(Instrumentation.WARMUP, start);
+        }, "view-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
     private void initializeComponents() {
-        // Create a country selector
-        countrySelector = new JComboBox<>(COUNTRIES);
-        countrySelector.setSelectedIndex(0);
+        // Create a type-ahead selector over countries, All Countries, regions and income groups;
+        // the last session's entry is selected when the data still has it
+        countrySelector = new TypeAheadField();
+        DataStore store = views.store();
+        List<String> items = views.selectorItems();
+        String selection = session.selection();
+        if (selection == null || !items.contains(selection)) {
+            selection = store.countryCount() > 0 ? store.countryName(0) : ALL_COUNTRIES;
+        }
+        countrySelector.setItems(items, selection);
 
         // Add action listener to update the visualization when a country is selected
-        countrySelector.addActionListener(e -> showVisualizationForCountry((String) countrySelector.getSelectedItem()));
+        countrySelector.addActionListener(e -> showVisualizationForCountry(countrySelector.getSelectedItem()));
 
         // Create Text Area for storytelling
         storyArea = new JTextArea();
@@ -101,7 +257,14 @@ public class LifeExpectancyDashboard extends JFrame {
 
         // Create Visualization Panel
         visualizationPanel = new JPanel(new BorderLayout());
-        visualizationPanel.add(storyArea, BorderLayout.EAST);
+        placeholder = new JLabel("", SwingConstants.CENTER);
+        placeholder.setFont(new Font("Arial", Font.ITALIC, 16));
+        chartCardLayout = new CardLayout();
+        chartCards = new JPanel(chartCardLayout);
+        chartCards.add(placeholder, PLACEHOLDER_CARD);
+        visibleCard = PLACEHOLDER_CARD;
+        visualizationPanel.add(chartCards, BorderLayout.CENTER);
+        visualizationPanel.add(new JScrollPane(storyArea), BorderLayout.EAST);
 
         // Create Button Panel
         buttonPanel = new JPanel(new GridLayout(1, 6, 10, 10));
@@ -110,22 +273,58 @@ public class LifeExpectancyDashboard extends JFrame {
         JButton lineChartButton = new JButton("Line Chart");
         JButton pieChartButton = new JButton("Pie Chart");
         JButton scatterPlotButton = new JButton("Scatter Plot");
+        JButton compareButton = new JButton("Compare");
+        playButton = new JToggleButton("Play");
         JButton aboutButton = new JButton("About");
         JButton viewDatasetButton = new JButton("View Dataset");
-
-        barChartButton.addActionListener(e -> showVisualization("Bar Chart"));
-        lineChartButton.addActionListener(e -> showVisualization("Line Chart"));
-        pieChartButton.addActionListener(e -> showVisualization("Pie Chart"));
-        scatterPlotButton.addActionListener(e -> showVisualization("Scatter Plot"));
+        JButton exportButton = new JButton("Export Report");
+
+        barChartButton.addActionListener(e -> showVisualization(ChartType.BAR));
+        lineChartButton.addActionListener(e -> showVisualization(ChartType.LINE));
+        pieChartButton.addActionListener(e -> showVisualization(ChartType.PIE));
+        scatterPlotButton.addActionListener(e -> showVisualization(ChartType.SCATTER));
+        compareButton.addActionListener(e -> showVisualization(ChartType.COMPARE));
+        playButton.addActionListener(e -> {
+            if (playButton.isSelected()) {
+                startPlayback();
+            } else {
+                stopPlayback();
+            }
+        });
         aboutButton.addActionListener(e -> showAboutInTextBox());
         viewDatasetButton.addActionListener(e -> showDataset());
-
+        exportButton.addActionListener(e -> showExportDialog());
+
+        // Male/female/both toggles; bar and line charts switch in place, others are rebuilt
+        JPanel sexPanel = new JPanel(new GridLayout(1, SEX_TOGGLES.length));
+        ButtonGroup sexGroup = new ButtonGroup();
+        for (int i = 0; i < SEX_TOGGLES.length; i++) {
+            String sexName = SEX_TOGGLES[i][1];
+            sexButtons[i] = new JToggleButton(SEX_TOGGLES[i][0]);
+            sexButtons[i].setMargin(new Insets(2, 2, 2, 2));
+            sexButtons[i].addActionListener(e -> showSex(sexName));
+            sexGroup.add(sexButtons[i]);
+            sexPanel.add(sexButtons[i]);
+        }
+        updateSexToggles();
+
+        // Indicator selector, listed from the registry's metadata
+        if (indicators != null && indicators.indicators().size() > 1) {
+            JComboBox<Indicator> indicatorSelector = new JComboBox<>(indicators.indicators().toArray(new Indicator[0]));
+            indicatorSelector.setSelectedItem(views.indicator());
+            indicatorSelector.addActionListener(e -> showIndicator((Indicator) indicatorSelector.getSelectedItem()));
+            buttonPanel.add(indicatorSelector);
+        }
         buttonPanel.add(countrySelector);
+        buttonPanel.add(sexPanel);
         buttonPanel.add(barChartButton);
         buttonPanel.add(lineChartButton);
         buttonPanel.add(pieChartButton);
         buttonPanel.add(scatterPlotButton);
+        buttonPanel.add(compareButton);
+        buttonPanel.add(playButton);
         buttonPanel.add(viewDatasetButton);
+        buttonPanel.add(exportButton);
         buttonPanel.add(aboutButton);
     }
 
@@ -143,9 +342,9 @@ public class LifeExpectancyDashboard extends JFrame {
     private JPanel createAboutPanel() {
         JPanel aboutPanel = new JPanel(new BorderLayout());
 
-        // Create a JLabel with an image background
+        // Create a JLabel with an image background, read off the EDT
         JLabel backgroundLabel = new JLabel();
-        backgroundLabel.setIcon(new ImageIcon("background.jpeg")); // Ensure this path is correct for the image
+        loadBackground(backgroundLabel, new File("background.jpeg"));
         backgroundLabel.setLayout(new BorderLayout());
 
         // Create a text area for the "About" information
@@ -165,13 +364,28 @@ public class LifeExpectancyDashboard extends JFrame {
                            "*Healthy Life Expectancy (HALE) at Birth: The number of years a newborn is expected to live in good health.\n" +
                            "*Healthy Life Expectancy (HALE) at Age 60: The number of additional years a person aged 60 is expected to live in good health.\n\n" +
                            "Use the buttons and charts to explore different aspects of the life expectancy and HALE data to gain insights into health trends globally.";
+        if (indicators != null && indicators.indicators().size() > 1) {
+            StringBuilder indicatorText = new StringBuilder("\n\nIndicators:\n");
+            for (Indicator other : indicators.indicators()) {
+                indicatorText.append('*').append(other.label());
+                if (!other.description().isEmpty()) {
+                    indicatorText.append(": ").append(other.description());
+                }
+                indicatorText.append('\n');
+            }
+            aboutText += indicatorText;
+        }
 
         aboutTextArea.setText(aboutText);
 
-        // Create the "View" button
-        JButton viewButton = new JButton("View Dashboard");
+        // Create the "View" button, enabled once the data has loaded
+        viewButton = new JButton("Loading data...");
         viewButton.setFont(new Font("Arial", Font.BOLD, 20));
-        viewButton.addActionListener(e -> cardLayout.show(mainPanel, "Dashboard"));
+        viewButton.setEnabled(false);
+        viewButton.addActionListener(e -> {
+            cardLayout.show(mainPanel, "Dashboard");
+            session.screenShown(true);
+        });
 
         // Add components to the backgroundLabel (which acts as a container)
         backgroundLabel.add(new JScrollPane(aboutTextArea), BorderLayout.CENTER);
@@ -183,319 +397,424 @@ public class LifeExpectancyDashboard extends JFrame {
         return aboutPanel;
     }
 
-    private void showVisualizationForCountry(String country) {
-        String selectedCountry = (String) countrySelector.getSelectedItem();
-        if (selectedCountry.equals(country)) {
-            showVisualization("Bar Chart"); // Default to Bar Chart for simplicity
-        }
-    }
-
-    private void showVisualization(String type) {
-        JFreeChart chart = null;
-        String country = (String) countrySelector.getSelectedItem();
-
-        if (country.equals("All Countries")) {
-            switch (type) {
-                case "Bar Chart":
-                    chart = createAllCountriesBarChart();
-                    storyArea.setText(getAllCountriesStory("Bar Chart"));
-                    break;
-                case "Line Chart":
-                    chart = createAllCountriesLineChart();
-                    storyArea.setText(getAllCountriesStory("Line Chart"));
-                    break;
-                case "Pie Chart":
-                    chart = createAllCountriesPieChart();
-                    storyArea.setText(getAllCountriesStory("Pie Chart"));
-                    break;
-                case "Scatter Plot":
-                    chart = createAllCountriesScatterPlot();
-                    storyArea.setText(getAllCountriesStory("Scatter Plot"));
-                    break;
+    // Sets the image as the label's icon once it is read; without the file there is no background
+    private static void loadBackground(JLabel label, File image) {
+        new SwingWorker<ImageIcon, Void>() {
+            @Override
+            protected ImageIcon doInBackground() throws IOException {
+                BufferedImage read = image.isFile() ? ImageIO.read(image) : null;
+                return read != null ? new ImageIcon(read) : null;
             }
-        } else {
-            switch (type) {
-                case "Bar Chart":
-                    chart = createCountryBarChart(country);
-                    storyArea.setText(getCountryStory(country, "Bar Chart"));
-                    break;
-                case "Line Chart":
-                    chart = createCountryLineChart(country);
-                    storyArea.setText(getCountryStory(country, "Line Chart"));
-                    break;
-                case "Pie Chart":
-                    chart = createCountryPieChart(country);
-                    storyArea.setText(getCountryStory(country, "Pie Chart"));
-                    break;
-                case "Scatter Plot":
-                    chart = createCountryScatterPlot(country);
-                    storyArea.setText(getCountryStory(country, "Scatter Plot"));
-                    break;
+
+            @Override
+            protected void done() {
+                try {
+                    ImageIcon icon = get();
+                    if (icon != null) {
+                        label.setIcon(icon);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Could not read " + image + ": " + e.getCause().getMessage());
+                }
             }
-        }
+        }.execute();
+    }
 
-        if (chart != null) {
-            ChartPanel chartPanel = new ChartPanel(chart);
-            chartPanel.setPreferredSize(new Dimension(800, 600));
-            visualizationPanel.removeAll();
-            visualizationPanel.add(chartPanel, BorderLayout.CENTER);
-            visualizationPanel.add(new JScrollPane(storyArea), BorderLayout.EAST);
-            visualizationPanel.revalidate();
+    // Enables the toggles for the sexes in the data and selects the current one
+    private void updateSexToggles() {
+        for (int i = 0; i < SEX_TOGGLES.length; i++) {
+            int sex = views.store().sexIndex(SEX_TOGGLES[i][1]);
+            sexButtons[i].setEnabled(sex >= 0 && views.store().sexCount() > 1);
+            sexButtons[i].setSelected(sex == currentSex);
         }
     }
 
+    private void showSex(String sexName) {
+        int sex = views.store().sexIndex(sexName);
+        if (sex < 0 || sex == currentSex) {
+            return;
+        }
+        String country = countrySelector.getSelectedItem();
+        ChartCache.Key previousKey = viewKey(country, currentChartType);
+        currentSex = sex;
+        if (pendingIndicator != null) {
+            return; // Shown once the indicator is in
+        }
+        if (currentView == null || pendingChart != null || transientView
+                || !views.read(() -> views.builder().setSex(currentView.chart, country, currentChartType, sex))) {
+            showVisualization(currentChartType);
+            return;
+        }
+        // The cached chart now shows the new sex
+        views.cache().invalidate(previousKey);
+        currentView = new ChartView(currentView.chart, views.read(() -> views.stories().story(country, currentChartType, sex)));
+        views.cache().put(viewKey(country, currentChartType), currentView);
+        storyArea.setText(currentView.story);
+        session.viewShown(country, currentChartType, sexName);
+    }
 
-    private JFreeChart createCountryBarChart(String country) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        int countryIndex = getCountryIndex(country);
+    private ChartCache.Key viewKey(String country, ChartType type) {
+        return views.key(country, type, currentSex);
+    }
 
-        // Populate dataset
-        for (int i = 0; i < YEARS.length; i++) {
-            dataset.addValue(LIFE_EXPECTANCY[countryIndex][0][i], "Life Expectancy at Birth", String.valueOf(YEARS[i]));
-            dataset.addValue(LIFE_EXPECTANCY[countryIndex][1][i], "Life Expectancy at Age 60", String.valueOf(YEARS[i]));
-            dataset.addValue(LIFE_EXPECTANCY[countryIndex][2][i], "HALE at Birth", String.valueOf(YEARS[i]));
-            dataset.addValue(LIFE_EXPECTANCY[countryIndex][3][i], "HALE at Age 60", String.valueOf(YEARS[i]));
+    private void showVisualizationForCountry(String country) {
+        String selectedCountry = countrySelector.getSelectedItem();
+        if (selectedCountry.equals(country)) {
+            showVisualization(ChartType.BAR); // Default to Bar Chart for simplicity
         }
+    }
 
-        // Create the chart with labels and legends
-        JFreeChart chart = ChartFactory.createBarChart(
-                "Life Expectancy and HALE for " + country, // Chart title
-                "Year",                                  // X-axis label
-                "Value",                                 // Y-axis label
-                dataset,                                 // Dataset
-                PlotOrientation.VERTICAL,                // Chart orientation
-                true,                                    // Include legend
-                true,                                    // Tooltips
-                false                                    // URLs
-        );
+    private void showVisualization(ChartType type) {
+        String country = countrySelector.getSelectedItem();
+        currentChartType = type;
+        if (pendingIndicator != null) {
+            // The charts of the current indicator are stale; the new one shows this type when loaded
+            return;
+        }
+        transientView = false;
+        session.viewShown(country, type, views.store().sexName(currentSex));
+        stopPlayback();
+        interactionStart = System.nanoTime();
+
+        // A newer request supersedes any chart that is still being built
+        if (pendingChart != null) {
+            pendingChart.cancel(true);
+            pendingChart = null;
+        }
 
-        // Customize plot (optional)
-        CategoryPlot plot = chart.getCategoryPlot();
-        plot.setRangeGridlinesVisible(true);  // Show grid lines
+        int sex = currentSex;
+        ChartCache.Key key = viewKey(country, type);
+        ChartView cached = views.cache().get(key);
+        if (cached != null) {
+            showChart(type, cached);
+            return;
+        }
+        showPlaceholder("Building " + type.label() + " for " + country + "...");
+
+        SwingWorker<ChartView, Void> worker = new SwingWorker<>() {
+            @Override
+            protected ChartView doInBackground() {
+                ChartView view = views.build(country, type, sex);
+                views.cache().put(key, view);
+                return view;
+            }
 
-        return chart;
+            @Override
+            protected void done() {
+                if (isCancelled() || pendingChart != this) {
+                    return;
+                }
+                pendingChart = null;
+                try {
+                    ChartView view = get();
+                    if (view != null) {
+                        showChart(type, view);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    showPlaceholder("Could not build the chart: " + e.getCause());
+                }
+            }
+        };
+        pendingChart = worker;
+        chartExecutor.execute(worker);
     }
 
-    private JFreeChart createAllCountriesBarChart() {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    // Shows the view in the chart panel kept for its type; the chart is swapped into the panel,
+    // so a switch repaints the panel instead of building components and laying them out
+    private void showChart(ChartType type, ChartView view) {
+        long start = System.nanoTime();
+        if (currentResampler != null) {
+            currentResampler.uninstall();
+        }
+        ChartPanel chartPanel = chartPanels.computeIfAbsent(type, this::createChartPanel);
+        chartPanel.setChart(view.chart);
+        storyArea.setText(view.story);
+        storyArea.setCaretPosition(0);
+        currentView = view;
+        currentResampler = ZoomResampler.install(chartPanel);
+        showCard(type.id());
+        Instrumentation.record(Instrumentation.CHART_LAYOUT, start);
+    }
 
-        // Populate dataset for all countries
-        for (int i = 0; i < COUNTRIES.length; i++) {
-            for (int j = 0; j < YEARS.length; j++) {
-                dataset.addValue(LIFE_EXPECTANCY[i][0][j], "Life Expectancy at Birth", COUNTRIES[i] + " - " + YEARS[j]);
-                dataset.addValue(LIFE_EXPECTANCY[i][1][j], "Life Expectancy at Age 60", COUNTRIES[i] + " - " + YEARS[j]);
-                dataset.addValue(LIFE_EXPECTANCY[i][2][j], "HALE at Birth", COUNTRIES[i] + " - " + YEARS[j]);
-                dataset.addValue(LIFE_EXPECTANCY[i][3][j], "HALE at Age 60", COUNTRIES[i] + " - " + YEARS[j]);
+    // Buffered chart panel that times its paints; the first one completes the pending chart request
+    private ChartPanel createChartPanel(ChartType type) {
+        ChartPanel chartPanel = new ChartPanel(null, true) {
+            @Override
+            public void paintComponent(Graphics g) {
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                Instrumentation.record(Instrumentation.CHART_PAINT, start);
+                if (player != null) {
+                    player.framePainted();
+                }
+                if (interactionStart != 0) {
+                    Instrumentation.record(Instrumentation.SHOW_VISUALIZATION, interactionStart);
+                    interactionStart = 0;
+                }
             }
+        };
+        chartPanel.setPreferredSize(new Dimension(800, 600));
+        if (type == ChartType.PIE) {
+            chartPanel.addChartMouseListener(new ChartMouseListener() {
+                @Override
+                public void chartMouseClicked(ChartMouseEvent event) {
+                    pieClicked(event.getEntity());
+                }
+
+                @Override
+                public void chartMouseMoved(ChartMouseEvent event) {
+                }
+            });
         }
+        chartCards.add(chartPanel, type.id());
+        return chartPanel;
+    }
 
-        // Create the chart with labels and legends
-        JFreeChart chart = ChartFactory.createBarChart(
-                "Life Expectancy and HALE for All Countries",
-                "Country - Year",
-                "Value",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false
-        );
-
-        // Customize plot (optional)
-        CategoryPlot plot = chart.getCategoryPlot();
-        plot.setRangeGridlinesVisible(true);
-
-        return chart;
-    }
-
-    private JFreeChart createCountryLineChart(String country) {
-        XYSeriesCollection dataset = new XYSeriesCollection();
-        int countryIndex = getCountryIndex(country);
-
-        // Series for each metric
-        XYSeries lifeExpectancyAtBirthSeries = new XYSeries("Life Expectancy at Birth");
-        XYSeries lifeExpectancyAtAge60Series = new XYSeries("Life Expectancy at Age 60");
-        XYSeries haleAtBirthSeries = new XYSeries("HALE at Birth");
-        XYSeries haleAtAge60Series = new XYSeries("HALE at Age 60");
-
-        // Populate dataset
-        for (int i = 0; i < YEARS.length; i++) {
-            lifeExpectancyAtBirthSeries.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][0][i]);
-            lifeExpectancyAtAge60Series.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][1][i]);
-            haleAtBirthSeries.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][2][i]);
-            haleAtAge60Series.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][3][i]);
-        }
-
-        // Add series to dataset
-        dataset.addSeries(lifeExpectancyAtBirthSeries);
-        dataset.addSeries(lifeExpectancyAtAge60Series);
-        dataset.addSeries(haleAtBirthSeries);
-        dataset.addSeries(haleAtAge60Series);
-
-        // Create chart with labels and legends
-        JFreeChart chart = ChartFactory.createXYLineChart(
-                "Life Expectancy and HALE Trends for " + country,  // Chart title
-                "Year",                                            // X-axis label
-                "Value",                                           // Y-axis label
-                dataset,                                           // Dataset
-                PlotOrientation.VERTICAL,                          // Chart orientation
-                true,                                              // Include legend
-                true,                                              // Tooltips
-                false                                              // URLs
-        );
-
-        return chart;
-    }
-
-    private JFreeChart createAllCountriesLineChart() {
-        XYSeriesCollection dataset = new XYSeriesCollection();
-
-        // Populate dataset for all countries
-        for (int i = 0; i < COUNTRIES.length; i++) {
-            XYSeries lifeExpectancyAtBirthSeries = new XYSeries(COUNTRIES[i] + " Life Expectancy at Birth");
-            XYSeries lifeExpectancyAtAge60Series = new XYSeries(COUNTRIES[i] + " Life Expectancy at Age 60");
-            XYSeries haleAtBirthSeries = new XYSeries(COUNTRIES[i] + " HALE at Birth");
-            XYSeries haleAtAge60Series = new XYSeries(COUNTRIES[i] + " HALE at Age 60");
-
-            for (int j = 0; j < YEARS.length; j++) {
-                lifeExpectancyAtBirthSeries.add(YEARS[j], LIFE_EXPECTANCY[i][0][j]);
-                lifeExpectancyAtAge60Series.add(YEARS[j], LIFE_EXPECTANCY[i][1][j]);
-                haleAtBirthSeries.add(YEARS[j], LIFE_EXPECTANCY[i][2][j]);
-                haleAtAge60Series.add(YEARS[j], LIFE_EXPECTANCY[i][3][j]);
+    // A click on a slice opens the pie below it, when there is one; a click beside an opened
+    // pie goes back to the full pie. The pie below holds one slice's entries, so it is built here.
+    private void pieClicked(ChartEntity entity) {
+        if (currentView == null || pendingChart != null) {
+            return;
+        }
+        if (entity instanceof PieSectionEntity) {
+            long start = System.nanoTime();
+            String slice = String.valueOf(((PieSectionEntity) entity).getSectionKey());
+            JFreeChart chart = views.builder().drillDown(currentView.chart, slice, currentSex);
+            if (chart != null) {
+                interactionStart = start;
+                transientView = true;
+                FoldedPieDataset pie = (FoldedPieDataset) ((PiePlot) chart.getPlot()).getDataset();
+                showChart(ChartType.PIE, new ChartView(chart, views.stories().drillDownStory(slice, pie)));
             }
+        } else if (transientView) {
+            showVisualization(ChartType.PIE);
+        }
+    }
 
-            dataset.addSeries(lifeExpectancyAtBirthSeries);
-            dataset.addSeries(lifeExpectancyAtAge60Series);
-            dataset.addSeries(haleAtBirthSeries);
-            dataset.addSeries(haleAtAge60Series);
+    // Plays the scatter plot, or from any other view the bar chart, of a country or All Countries
+    // through the years. The playback chart is prepared off the EDT like any other chart.
+    private void startPlayback() {
+        if (pendingIndicator != null) {
+            playButton.setSelected(false);
+            return;
+        }
+        String country = countrySelector.getSelectedItem();
+        if (DashboardViews.isGroup(country)) {
+            playButton.setSelected(false);
+            storyArea.setText("Playback is available for a country or " + ALL_COUNTRIES + ".");
+            return;
+        }
+        if (views.store().yearCount() < 2) {
+            playButton.setSelected(false);
+            storyArea.setText("Playback needs data for more than one year.");
+            return;
+        }
+        ChartType type = currentChartType == ChartType.SCATTER ? ChartType.SCATTER : ChartType.BAR;
+        if (pendingChart != null) {
+            pendingChart.cancel(true);
         }
+        int sex = currentSex;
+        interactionStart = System.nanoTime();
+        showPlaceholder("Preparing playback for " + country + "...");
+
+        SwingWorker<ChartView, Void> worker = new SwingWorker<>() {
+            private PlaybackChart playback;
+
+            @Override
+            protected ChartView doInBackground() {
+                return views.read(() -> {
+                    playback = views.builder().createPlaybackChart(country, type, sex);
+                    return new ChartView(playback.chart(), views.stories().playbackStory(country, type));
+                });
+            }
 
-        // Create chart with labels and legends
-        JFreeChart chart = ChartFactory.createXYLineChart(
-                "Life Expectancy and HALE Trends for All Countries",
-                "Year",
-                "Value",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false
-        );
+            @Override
+            protected void done() {
+                if (isCancelled() || pendingChart != this) {
+                    return;
+                }
+                pendingChart = null;
+                try {
+                    ChartView view = get();
+                    currentChartType = type;
+                    transientView = true;
+                    showChart(type, view);
+                    player = new FramePlayer(playback, FramePlayer.DEFAULT_FPS, LifeExpectancyDashboard.this::playbackFinished);
+                    player.start();
+                } catch (InterruptedException | ExecutionException e) {
+                    playButton.setSelected(false);
+                    showPlaceholder("Could not prepare the playback: " + e.getCause());
+                }
+            }
+        };
+        pendingChart = worker;
+        chartExecutor.execute(worker);
+    }
 
-        return chart;
+    // Stops playback on the frame shown; nothing to do when not playing
+    private void stopPlayback() {
+        if (player != null) {
+            player.stop();
+            player = null;
+        }
+        playButton.setSelected(false);
     }
 
+    private void playbackFinished() {
+        storyArea.append(" Played " + player.summary() + ".");
+        player = null;
+        playButton.setSelected(false);
+    }
 
-    private JFreeChart createCountryPieChart(String country) {
-        DefaultPieDataset dataset = new DefaultPieDataset();
-        int countryIndex = getCountryIndex(country);
+    // Stand-in shown while a chart is being built
+    private void showPlaceholder(String message) {
+        if (currentResampler != null) {
+            currentResampler.uninstall();
+            currentResampler = null;
+        }
+        currentView = null;
+        placeholder.setText(message);
+        showCard(PLACEHOLDER_CARD);
+    }
 
-        // Populate dataset
-        dataset.setValue("Life Expectancy at Birth", LIFE_EXPECTANCY[countryIndex][0][0]);
-        dataset.setValue("Life Expectancy at Age 60", LIFE_EXPECTANCY[countryIndex][1][0]);
-        dataset.setValue("HALE at Birth", LIFE_EXPECTANCY[countryIndex][2][0]);
-        dataset.setValue("HALE at Age 60", LIFE_EXPECTANCY[countryIndex][3][0]);
+    private void showCard(String card) {
+        if (!card.equals(visibleCard)) {
+            chartCardLayout.show(chartCards, card);
+            visibleCard = card;
+        }
+    }
 
-        // Create chart with labels and legends
-        JFreeChart chart = ChartFactory.createPieChart(
-                "Life Expectancy and HALE Distribution for " + country,
-                dataset,
-                true,   // Include legend
-                true,   // Tooltips
-                false   // URLs
-        );
+    // Follows a directory of data extracts: changed values are patched into the visible chart,
+    // new countries or years reload the dashboard
+    public void follow(LiveIngestion ingestion) throws IOException {
+        if (views == null) {
+            // Follows once loadExisting() has run, in the data loader
+            afterLoad.add(() -> {
+                try {
+                    follow(ingestion);
+                } catch (IOException e) {
+                    System.err.println("Could not watch the data directory: " + e.getMessage());
+                }
+            });
+            return;
+        }
+        ingestion.start(new LiveIngestion.Listener() {
+            @Override
+            public void cellsChanged(CellUpdates updates) {
+                updateExecutor.execute(() -> {
+                    if (views.applyUpdates(updates)) {
+                        SwingUtilities.invokeLater(() -> showUpdates(updates));
+                    }
+                });
+            }
 
-        return chart;
+            @Override
+            public void storeReplaced(DataStore newStore) {
+                SwingUtilities.invokeLater(() -> reloadData(newStore));
+            }
+        });
     }
 
-    private JFreeChart createAllCountriesPieChart() {
-        DefaultPieDataset dataset = new DefaultPieDataset();
+    // Pushes values already written into the store into the visible chart as one change event;
+    // other cached charts were dropped and are rebuilt when next shown
+    private void showUpdates(CellUpdates updates) {
+        if (updates.store() != views.store()) {
+            return; // Superseded by a reload, which already holds these values
+        }
+        if (pendingIndicator != null) {
+            return; // The stale chart is not shown
+        }
+
+        String country = countrySelector.getSelectedItem();
+        if (currentView == null || pendingChart != null || transientView
+                || !views.read(() -> views.builder().update(currentView.chart, country, currentChartType, currentSex, updates))) {
+            showVisualization(currentChartType);
+            return;
+        }
+        currentView = new ChartView(currentView.chart, views.read(() -> views.stories().story(country, currentChartType, currentSex)));
+        views.cache().put(viewKey(country, currentChartType), currentView);
+        storyArea.setText(currentView.story);
+    }
 
-        // Populate dataset for all countries
-        for (int i = 0; i < COUNTRIES.length; i++) {
-            for (int j = 0; j < YEARS.length; j++) {
-                dataset.setValue(COUNTRIES[i] + " - " + YEARS[j] + " Life Expectancy at Birth", LIFE_EXPECTANCY[i][0][j]);
-                dataset.setValue(COUNTRIES[i] + " - " + YEARS[j] + " Life Expectancy at Age 60", LIFE_EXPECTANCY[i][1][j]);
-                dataset.setValue(COUNTRIES[i] + " - " + YEARS[j] + " HALE at Birth", LIFE_EXPECTANCY[i][2][j]);
-                dataset.setValue(COUNTRIES[i] + " - " + YEARS[j] + " HALE at Age 60", LIFE_EXPECTANCY[i][3][j]);
+    // Switches to another indicator of the registry; its data is loaded off the EDT when it
+    // is not held by the registry, then shown like a reload
+    private void showIndicator(Indicator next) {
+        if (next == null) {
+            return;
+        }
+        // A switch still loading is dropped; its store still lands in the registry for later
+        if (pendingIndicator != null) {
+            pendingIndicator.cancel(false);
+            pendingIndicator = null;
+            if (next == views.indicator()) {
+                showVisualization(currentChartType);
             }
         }
+        if (next == views.indicator()) {
+            return;
+        }
+        stopPlayback();
+        if (pendingChart != null) {
+            pendingChart.cancel(true);
+            pendingChart = null;
+        }
+        showPlaceholder("Loading " + next.label() + "...");
 
-        // Create chart with labels and legends
-        JFreeChart chart = ChartFactory.createPieChart(
-                "Life Expectancy and HALE Distribution for All Countries",
-                dataset,
-                true,   // Include legend
-                true,   // Tooltips
-                false   // URLs
-        );
-
-        return chart;
-    }
-
-    private JFreeChart createCountryScatterPlot(String country) {
-        XYSeriesCollection dataset = new XYSeriesCollection();
-        int countryIndex = getCountryIndex(country);
-
-        XYSeries lifeExpectancyAtBirthSeries = new XYSeries("Life Expectancy at Birth");
-        XYSeries lifeExpectancyAtAge60Series = new XYSeries("Life Expectancy at Age 60");
-        XYSeries haleAtBirthSeries = new XYSeries("HALE at Birth");
-        XYSeries haleAtAge60Series = new XYSeries("HALE at Age 60");
-
-        for (int i = 0; i < YEARS.length; i++) {
-            lifeExpectancyAtBirthSeries.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][0][i]);
-            lifeExpectancyAtAge60Series.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][1][i]);
-            haleAtBirthSeries.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][2][i]);
-            haleAtAge60Series.add(YEARS[i], LIFE_EXPECTANCY[countryIndex][3][i]);
-        }
-
-        dataset.addSeries(lifeExpectancyAtBirthSeries);
-        dataset.addSeries(lifeExpectancyAtAge60Series);
-        dataset.addSeries(haleAtBirthSeries);
-        dataset.addSeries(haleAtAge60Series);
-
-        return ChartFactory.createScatterPlot(
-                "Life Expectancy and HALE Scatter Plot for " + country,
-                "Year",
-                "Value",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false);
-    }
-
-    private JFreeChart createAllCountriesScatterPlot() {
-        XYSeriesCollection dataset = new XYSeriesCollection();
-        for (int i = 0; i < COUNTRIES.length; i++) {
-            XYSeries lifeExpectancyAtBirthSeries = new XYSeries(COUNTRIES[i] + " Life Expectancy at Birth");
-            XYSeries lifeExpectancyAtAge60Series = new XYSeries(COUNTRIES[i] + " Life Expectancy at Age 60");
-            XYSeries haleAtBirthSeries = new XYSeries(COUNTRIES[i] + " HALE at Birth");
-            XYSeries haleAtAge60Series = new XYSeries(COUNTRIES[i] + " HALE at Age 60");
-
-            for (int j = 0; j < YEARS.length; j++) {
-                lifeExpectancyAtBirthSeries.add(YEARS[j], LIFE_EXPECTANCY[i][0][j]);
-                lifeExpectancyAtAge60Series.add(YEARS[j], LIFE_EXPECTANCY[i][1][j]);
-                haleAtBirthSeries.add(YEARS[j], LIFE_EXPECTANCY[i][2][j]);
-                haleAtAge60Series.add(YEARS[j], LIFE_EXPECTANCY[i][3][j]);
+        SwingWorker<DataStore, Void> worker = new SwingWorker<>() {
+            @Override
+            protected DataStore doInBackground() throws IOException {
+                return indicators.store(next);
             }
 
-            dataset.addSeries(lifeExpectancyAtBirthSeries);
-            dataset.addSeries(lifeExpectancyAtAge60Series);
-            dataset.addSeries(haleAtBirthSeries);
-            dataset.addSeries(haleAtAge60Series);
-        }
+            @Override
+            protected void done() {
+                if (pendingIndicator != this) {
+                    return;
+                }
+                pendingIndicator = null;
+                try {
+                    reloadData(get(), next);
+                } catch (InterruptedException | ExecutionException e) {
+                    showPlaceholder("Could not load " + next.label() + ": " + e.getCause());
+                }
+            }
+        };
+        pendingIndicator = worker;
+        indicatorExecutor.execute(worker);
+    }
 
-        return ChartFactory.createScatterPlot(
-                "Life Expectancy and HALE Scatter Plot for All Countries",
-                "Year",
-                "Value",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false);
+    // Swaps in freshly loaded data: cached charts are dropped and the current view is rebuilt
+    public void reloadData(DataStore newStore) {
+        reloadData(newStore, views.indicator());
     }
 
-    private int getCountryIndex(String country) {
-        for (int i = 0; i < COUNTRIES.length; i++) {
-            if (COUNTRIES[i].equals(country)) {
-                return i;
-            }
+    private void reloadData(DataStore newStore, Indicator indicator) {
+        int sex = newStore.sexIndex(views.store().sexName(currentSex));
+        currentSex = sex >= 0 ? sex : newStore.defaultSex();
+        views.reload(newStore, indicator);
+        session.indicatorShown(indicator);
+
+        countrySelector.setItems(views.selectorItems(), countrySelector.getSelectedItem());
+        updateSexToggles();
+
+        showVisualization(currentChartType);
+    }
+
+    // Hit/miss counters for sizing the chart cache; null while the data is loading
+    public ChartCache<?> getChartCache() {
+        return views != null ? views.cache() : null;
+    }
+
+    // Renders chosen country x chart type pages off the EDT, for the current data and sex
+    private void showExportDialog() {
+        DataStore store = views.store();
+        List<String> countries = new ArrayList<>();
+        for (int i = 0; i < store.countryCount(); i++) {
+            countries.add(store.countryName(i));
         }
-        return -1; // Default value if country not found
+        countries.add(ALL_COUNTRIES);
+        new ReportExportDialog(this, views.builder(), views.stories(), currentSex, countries,
+                countrySelector.getSelectedItem(), currentChartType).setVisible(true);
     }
 
     private void showAboutInTextBox() {
@@ -503,98 +822,134 @@ public class LifeExpectancyDashboard extends JFrame {
     }
 
     private void showDataset() {
+        long start = System.nanoTime();
         // Create a new JFrame for the dataset window
-        JFrame datasetFrame = new JFrame("Life Expectancy Dataset");
+        JFrame datasetFrame = new JFrame(views.indicator().label() + " Dataset");
         datasetFrame.setSize(800, 600);
         datasetFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE); // Close only the dataset window
 
-        // Column names for the table
-        String[] columns = {"Country", "Year", "Life Expectancy at Birth", "Life Expectancy at Age 60", "HALE at Birth", "HALE at Age 60"};
-
-        // Data to be filled in the table
-        Object[][] data = new Object[COUNTRIES.length * YEARS.length][6];
-        int row = 0;
-
-        // Populate data array with life expectancy values for each country and year
-        for (int i = 0; i < COUNTRIES.length - 1; i++) {  // Exclude 'All Countries'
-            for (int j = 0; j < YEARS.length; j++) {
-                data[row][0] = COUNTRIES[i];  // Country
-                data[row][1] = YEARS[j];      // Year
-                data[row][2] = LIFE_EXPECTANCY[i][0][j];  // Life Expectancy at Birth
-                data[row][3] = LIFE_EXPECTANCY[i][1][j];  // Life Expectancy at Age 60
-                data[row][4] = LIFE_EXPECTANCY[i][2][j];  // HALE at Birth
-                data[row][5] = LIFE_EXPECTANCY[i][3][j];  // HALE at Age 60
-                row++;
-            }
-        }
-
-        // Create the JTable with the data and column names
-        JTable table = new JTable(data, columns);
+        // Cells are read on demand from the store; nothing is copied into the table
+        DatasetTableModel model = views.datasetModel();
+        JTable table = new JTable(model);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS); // Make columns fit the window
         table.setFillsViewportHeight(true); // Make sure the table fills the viewport
 
+        // Click a column header to sort by it, click again to reverse
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    model.toggleSort(column);
+                    updateSortIndicator(table, model);
+                }
+            }
+        });
+
+        // Filter rows by country name as the user types
+        JTextField filterField = new JTextField();
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                model.setCountryFilter(filterField.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                model.setCountryFilter(filterField.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                model.setCountryFilter(filterField.getText());
+            }
+        });
+        JPanel filterPanel = new JPanel(new BorderLayout(10, 0));
+        filterPanel.add(new JLabel("Filter countries:"), BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        datasetFrame.add(filterPanel, BorderLayout.NORTH);
+
         // Add the table to a JScrollPane to make it scrollable
         JScrollPane scrollPane = new JScrollPane(table);
 
         // Add the scrollPane to the datasetFrame
-        datasetFrame.add(scrollPane);
+        datasetFrame.add(scrollPane, BorderLayout.CENTER);
 
         // Make the dataset window visible
         datasetFrame.setVisible(true);
+        Instrumentation.record(Instrumentation.SHOW_DATASET, start);
     }
 
-    private String getCountryStory(String country, String chartType) {
-        // Add stories for different charts and countries
-        switch (country) {
-            case "Australia":
-                return switch (chartType) {
-                    case "Bar Chart" -> "The bar chart for Australia demonstrates a gradual increase in life expectancy at birth from 81.9 years in 2010 to 83 years in 2019, indicating improved overall longevity. Life expectancy at age 60 also shows an upward trend, moving from 24.7 years in 2010 to 25.6 years in 2019, suggesting that Australians are living longer even in their senior years. Healthy Life Expectancy (HALE) at birth rose from 70.2 years to 70.9 years, reflecting an increase in the years Australians spend in good health. At the same time, HALE at age 60 increased from 18.4 years to 19 years, highlighting a slight but significant improvement in the health quality of the elderly population.";
-                    case "Line Chart" -> "The line chart for Australia shows a clear positive trend in life expectancy at birth, which increased from 81.9 years in 2010 to 83 years in 2019. This trend underscores Australia's progress in extending lifespan. Life expectancy at age 60 also shows a consistent rise from 24.7 years to 25.6 years, indicating enhanced quality of life for older Australians. The increase in HALE at birth from 70.2 years to 70.9 years and the rise in HALE at age 60 from 18.4 years to 19 years suggest improvements in health standards, contributing to better overall health outcomes.";
-                    case "Pie Chart" -> "The pie chart for Australia in 2019 illustrates that the highest value is life expectancy at birth, standing at 83 years, indicating a robust lifespan. HALE at birth is substantial at 70.9 years, suggesting that most of these years are spent in good health. Life expectancy at age 60 is 25.6 years, and HALE at age 60 is 19 years, showing that Australians maintain a good quality of life well into their senior years. This distribution reflects Australia's strong health care system and high standards of living.";
-                    case "Scatter Plot" -> "The scatter plot for Australia displays a positive trajectory in both life expectancy and HALE metrics. Life expectancy at birth has steadily increased from 81.9 years in 2010 to 83 years in 2019. Similarly, HALE at birth has risen from 70.2 years to 70.9 years, while HALE at age 60 has grown from 18.4 years to 19 years. This data illustrates the steady improvement in both lifespan and health quality, showcasing Australia’s continued progress in public health.";
-                    default -> "No story available for this chart type.";
-                };
-            case "China":
-                return switch (chartType) {
-                    case "Bar Chart" -> "The bar chart for China reveals an increase in life expectancy at birth from 74.9 years in 2010 to 77.4 years in 2019. This rise signifies substantial improvements in longevity. However, life expectancy at age 60 shows a more modest increase from 19.6 years to 21.1 years, suggesting a slower improvement in the later stages of life. Healthy Life Expectancy (HALE) at birth improved from 66.7 years to 68.5 years, indicating that the additional years of life are increasingly spent in good health. HALE at age 60 also increased from 14.9 years to 15.9 years, reflecting improvements in health among the elderly.";
-                    case "Line Chart" -> "The line chart for China illustrates a steady increase in life expectancy at birth from 74.9 years in 2010 to 77.4 years in 2019. Life expectancy at age 60 also shows an upward trend, from 19.6 years to 21.1 years, suggesting improved quality of life for older adults. HALE at birth rose from 66.7 years to 68.5 years, and HALE at age 60 increased from 14.9 years to 15.9 years, reflecting overall health improvements and increased longevity.";
-                    case "Pie Chart" -> " In the pie chart for China, the largest segment represents life expectancy at birth, which is 77.4 years in 2019. HALE at birth is 68.5 years, indicating that a significant portion of life expectancy is spent in good health. Life expectancy at age 60 is 21.1 years, and HALE at age 60 is 15.9 years. This distribution highlights the gains in longevity and health quality, showing that while life expectancy has increased, the quality of health in old age has also improved.";
-                    case "Scatter Plot" -> "The scatter plot for China shows a clear upward trend in both life expectancy and HALE metrics. Life expectancy at birth increased from 74.9 years in 2010 to 77.4 years in 2019. HALE at birth also improved from 66.7 years to 68.5 years, and HALE at age 60 rose from 14.9 years to 15.9 years. This data illustrates the progress China has made in both extending lifespan and improving health outcomes.";
-                    default -> "No story available for this chart type.";
-                };
-            case "India":
-                return switch (chartType) {
-                    case "Bar Chart" -> "The bar chart for India demonstrates an increase in life expectancy at birth from 67.2 years in 2010 to 70.8 years in 2019, reflecting significant gains in longevity. Life expectancy at age 60 also increased from 18 years to 18.8 years. Healthy Life Expectancy (HALE) at birth rose from 57.3 years to 60.3 years, indicating that more of these years are spent in good health. HALE at age 60 improved from 12.6 years to 13.2 years, showing enhanced health conditions among the elderly.";
-                    case "Line Chart" -> "The line chart for India reveals a consistent upward trend in life expectancy at birth, which grew from 67.2 years in 2010 to 70.8 years in 2019. Life expectancy at age 60 also saw an increase from 18 years to 18.8 years. HALE at birth improved from 57.3 years to 60.3 years, while HALE at age 60 rose from 12.6 years to 13.2 years, reflecting ongoing improvements in health and longevity.";
-                    case "Pie Chart" -> "The pie chart for India highlights that life expectancy at birth in 2019 is the highest at 70.8 years, with HALE at birth at 60.3 years. Life expectancy at age 60 stands at 18.8 years, and HALE at age 60 is 13.2 years. This distribution illustrates India's progress in extending lifespan and improving health, particularly among the elderly population.";
-                    case "Scatter Plot" -> " The scatter plot for India shows an upward trend in life expectancy and HALE metrics. Life expectancy at birth increased from 67.2 years in 2010 to 70.8 years in 2019. HALE at birth also rose from 57.3 years to 60.3 years, while HALE at age 60 improved from 12.6 years to 13.2 years. This indicates a general enhancement in health and longevity over the years.";
-                    default -> "No story available for this chart type.";
-                };
-            case "United States of America":
-                return switch (chartType) {
-                    case "Bar Chart" -> "The bar chart for the USA highlights high life expectancy at birth and at age 60, though disparities in HALE suggest areas for improvement in healthcare equity.";
-                    case "Line Chart" -> "The line chart for the USA depicts stable life expectancy trends, with recent years showing slight improvements in HALE, reflecting ongoing healthcare advancements.";
-                    case "Pie Chart" -> "In the USA's pie chart, life expectancy at birth occupies a major portion, showcasing the country's high standard of living and healthcare facilities.";
-                    case "Scatter Plot" -> "The scatter plot for the USA illustrates a consistent trend of high life expectancy and HALE, demonstrating the effectiveness of the nation's health policies.";
-                    default -> "No story available for this chart type.";
-                };
-            default:
-                return "No story available for this country.";
-        }
-    }
-
-    private String getAllCountriesStory(String chartType) {
-        // General story for all countries
-        return switch (chartType) {
-            case "Bar Chart" -> "The bar chart compares life expectancy and HALE metrics across different countries, illustrating variations in health outcomes and quality of life on a global scale.";
-            case "Line Chart" -> "The line chart showcases trends in life expectancy and HALE for multiple countries, highlighting how different nations have improved over time.";
-            case "Pie Chart" -> "The pie chart presents the distribution of life expectancy and HALE metrics among various countries, providing a visual comparison of health standards worldwide.";
-            case "Scatter Plot" -> "The scatter plot demonstrates the relationship between life expectancy and HALE across countries, revealing patterns and disparities in global health data.";
-            default -> "No story available for this chart type.";
-        };
+    // Marks the sorted column header with an arrow
+    private static void updateSortIndicator(JTable table, DatasetTableModel model) {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            int column = table.convertColumnIndexToModel(i);
+            String name = model.getColumnName(column);
+            if (column == model.getSortColumn()) {
+                name += model.isAscending() ? " \u25B2" : " \u25BC";
+            }
+            table.getColumnModel().getColumn(i).setHeaderValue(name);
+        }
+        table.getTableHeader().repaint();
     }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new LifeExpectancyDashboard().setVisible(true));
+    public static void main(String[] args) throws Exception {
+        // --serve runs the embedded chart HTTP service instead of the window
+        if (args.length > 0 && args[0].equals("--serve")) {
+            ChartServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // --watch <dir> loads every extract in the directory and follows it for changes;
+        // --indicators <schema> offers the indicators it describes, starting with the one shown
+        // last, or the first; an optional snapshot, or one or more CSV/TSV exports, replace the
+        // built-in sample data. The data is loaded while the window is already up.
+        Callable<DataStore> loader;
+        LiveIngestion ingestion = null;
+        IndicatorRegistry registry = null;
+        Indicator indicator = Indicator.LIFE_EXPECTANCY;
+        if (args.length > 1 && args[0].equals("--indicators")) {
+            try {
+                registry = IndicatorRegistry.load(Paths.get(args[1]));
+            } catch (IOException e) {
+                System.err.println("Could not load " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            Indicator last = registry.indicator(DashboardSession.load().indicator());
+            indicator = last != null ? last : registry.indicators().get(0);
+            IndicatorRegistry schema = registry;
+            Indicator start = indicator;
+            loader = () -> schema.store(start);
+        } else if (args.length > 1 && args[0].equals("--watch")) {
+            ingestion = new LiveIngestion(Paths.get(args[1]));
+            loader = ingestion::loadExisting;
+        } else if (args.length > 1) {
+            List<Path> files = new ArrayList<>();
+            for (String arg : args) {
+                files.add(Paths.get(arg));
+            }
+            loader = () -> ParallelCsvLoader.load(files);
+        } else if (args.length > 0) {
+            Path file = Paths.get(args[0]);
+            loader = () -> DataStore.open(file);
+        } else {
+            loader = SampleData::load;
+        }
+        EdtWatchdog.start();
+        LiveIngestion watched = ingestion;
+        IndicatorRegistry indicators = registry;
+        Indicator first = indicator;
+        SwingUtilities.invokeLater(() -> {
+            LifeExpectancyDashboard dashboard = new LifeExpectancyDashboard(indicators, first, loader);
+            dashboard.setVisible(true);
+            if (watched != null) {
+                try {
+                    dashboard.follow(watched);
+                } catch (IOException e) {
+                    System.err.println("Could not watch " + args[1] + ": " + e.getMessage());
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+// Follows a directory of CSV/TSV extracts (e.g. yearly WHO downloads) with a WatchService.
+// Only files that are new or whose size or modification time changed are parsed. Their
+// values are compared with the current store:
+// - when every country, metric, sex and year already exists, the changed values are
+//   handed to the listener as one CellUpdates batch, to be applied in place;
+// - otherwise (a new year or country) the store is rebuilt with the new data and
+//   handed over whole.
+// Events are collected until the directory has been quiet for a moment, so a file
+// that is still being written, or several files copied together, become one batch.
+public final class LiveIngestion implements Closeable {
+
+    private static final long QUIET_MILLIS = 500;
+
+    public interface Listener {
+        // Called on the ingestion thread; the updates are not yet applied to the store
+        void cellsChanged(CellUpdates updates);
+
+        // Called on the ingestion thread with a store that replaces the current one
+        void storeReplaced(DataStore store);
+    }
+
+    private final Path directory;
+    private final Map<Path, FileState> ingested = new HashMap<>();
+    private Listener listener;
+    private WatchService watchService;
+
+    // The store the next batch refers to: the initial one, then the latest replacement
+    private DataStore current;
+
+    // Batches handed to the listener that it may not have applied yet
+    private final List<CellUpdates> unapplied = new ArrayList<>();
+
+    public LiveIngestion(Path directory) {
+        this.directory = directory;
+    }
+
+    // Loads every data file already in the directory into one store, parsing them in parallel
+    public DataStore loadExisting() throws IOException {
+        List<Path> files = dataFiles();
+        Map<Path, FileState> states = new HashMap<>();
+        for (Path file : files) {
+            states.put(file, FileState.of(file));
+        }
+        current = ParallelCsvLoader.load(files);
+        ingested.putAll(states);
+        return current;
+    }
+
+    // Starts following the directory; call after loadExisting()
+    public void start(Listener listener) throws IOException {
+        if (current == null) {
+            throw new IllegalStateException("loadExisting() has to run first");
+        }
+        this.listener = listener;
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::run, "data-ingest");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // Wait for the directory to settle, then look at every file once
+                do {
+                    key.pollEvents();
+                    key.reset();
+                } while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                ingestChanges();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void ingestChanges() {
+        List<Path> changed = new ArrayList<>();
+        List<DataStore> parsed = new ArrayList<>();
+        try {
+            for (Path file : dataFiles()) {
+                FileState state = FileState.of(file);
+                if (state.equals(ingested.get(file))) {
+                    continue;
+                }
+                try {
+                    parsed.add(CsvLoader.load(file));
+                    changed.add(file);
+                    ingested.put(file, state);
+                } catch (IOException | RuntimeException e) {
+                    // Possibly still being written; it is retried on its next change
+                    System.err.println("Could not ingest " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list " + directory + ": " + e.getMessage());
+            return;
+        }
+        if (parsed.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        CellUpdates updates = new CellUpdates(current);
+        // The dashboard applies earlier batches to the store while it is compared and copied here
+        Lock read = current.lock().readLock();
+        read.lock();
+        try {
+            ingest(changed, parsed, updates);
+        } finally {
+            read.unlock();
+        }
+        Instrumentation.record(Instrumentation.INGEST, start);
+    }
+
+    private void ingest(List<Path> changed, List<DataStore> parsed, CellUpdates updates) {
+        boolean fits = true;
+        for (DataStore delta : parsed) {
+            fits &= collectUpdates(delta, updates);
+        }
+        if (fits) {
+            if (!updates.isEmpty()) {
+                System.out.println("Ingested " + changed + ": " + updates);
+                unapplied.removeIf(CellUpdates::isApplied);
+                unapplied.add(updates);
+                listener.cellsChanged(updates);
+            }
+        } else {
+            // Earlier batches still waiting to be applied are carried over into the new store
+            List<CellUpdates> carried = new ArrayList<>(unapplied);
+            carried.removeIf(CellUpdates::isApplied);
+            unapplied.clear();
+            DataStore.Builder builder = new DataStore.Builder().addAll(current);
+            for (CellUpdates pending : carried) {
+                pending.addTo(builder);
+            }
+            for (DataStore delta : parsed) {
+                builder.addAll(delta);
+            }
+            current = builder.build();
+            System.out.println("Ingested " + changed + ": rebuilt the store for new countries or years");
+            listener.storeReplaced(current);
+        }
+    }
+
+    // Adds the values of delta that differ from the current store; false when one has no cell there
+    private boolean collectUpdates(DataStore delta, CellUpdates updates) {
+        int[] metrics = new int[delta.metricCount()];
+        for (int m = 0; m < metrics.length; m++) {
+            metrics[m] = current.metricIndex(delta.metricName(m));
+        }
+        int[] sexes = new int[delta.sexCount()];
+        for (int s = 0; s < sexes.length; s++) {
+            sexes[s] = current.sexIndex(delta.sexName(s));
+        }
+        int[] years = new int[delta.yearCount()];
+        for (int y = 0; y < years.length; y++) {
+            years[y] = current.yearIndex(delta.year(y));
+        }
+
+        for (int c = 0; c < delta.countryCount(); c++) {
+            int country = current.countryIndex(delta.countryName(c));
+            for (int m = 0; m < metrics.length; m++) {
+                for (int s = 0; s < sexes.length; s++) {
+                    for (int y = 0; y < years.length; y++) {
+                        double value = delta.value(c, m, s, y);
+                        if (Double.isNaN(value)) {
+                            continue;
+                        }
+                        if (country < 0 || metrics[m] < 0 || sexes[s] < 0 || years[y] < 0) {
+                            return false;
+                        }
+                        if (Double.compare(current.value(country, metrics[m], sexes[s], years[y]), value) != 0) {
+                            updates.add(country, metrics[m], sexes[s], years[y], value);
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<Path> dataFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (Files.isRegularFile(file) && (name.endsWith(".csv") || name.endsWith(".tsv") || name.endsWith(".txt"))) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // Size and modification time, enough to tell that a file changed
+    private static final class FileState {
+        final long size;
+        final long modified;
+
+        FileState(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static FileState of(Path file) throws IOException {
+            return new FileState(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState) o;
+            return size == other.size && modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(modified);
+        }
+    }
+}
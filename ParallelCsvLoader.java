@@ -0,0 +1,601 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Loads one or more large CSV/TSV exports in parallel.
+// Each file is cut into byte ranges that end on a line break, and the ranges are parsed
+// by a fork/join pool straight from memory-mapped ByteBuffers: fields are byte ranges of
+// the mapping, numbers are parsed from the bytes and a key only becomes a String the first
+// time a chunk sees it. Every chunk fills its own DataStore.Builder; results are merged
+// pairwise as the tasks join, left before right, so later rows still win like in CsvLoader.
+//
+// Accepts the same headers and skips the same rows as CsvLoader. Like CsvLoader, a quoted
+// field cannot contain a line break.
+//
+// The load is planned against a heap budget (dashboard.loadHeapMB, half the maximum heap by
+// default): the row count is estimated from a sample of each file, chunks are sized so the
+// chunks in flight stay within a quarter of the budget, and a load whose rows would not fit
+// fails before anything is parsed. dashboard.loadThreads sets the parallelism.
+public final class ParallelCsvLoader {
+
+    // Builder columns: four int codes and a double per row
+    private static final int ROW_BYTES = 4 * 4 + 8;
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final int parallelism;
+    private final long heapBudget;
+
+    public ParallelCsvLoader() {
+        this(Integer.getInteger("dashboard.loadThreads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("dashboard.loadHeapMB", Runtime.getRuntime().maxMemory() / 2 / (1 << 20)) << 20);
+    }
+
+    public ParallelCsvLoader(int parallelism, long heapBudgetBytes) {
+        if (parallelism < 1 || heapBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Need at least one thread and a positive heap budget");
+        }
+        this.parallelism = parallelism;
+        this.heapBudget = heapBudgetBytes;
+    }
+
+    public static DataStore load(Path path) throws IOException {
+        return new ParallelCsvLoader().loadAll(List.of(path));
+    }
+
+    public static DataStore load(List<Path> paths) throws IOException {
+        return new ParallelCsvLoader().loadAll(paths);
+    }
+
+    public DataStore loadAll(List<Path> paths) throws IOException {
+        long start = System.nanoTime();
+        List<Chunk> chunks = new ArrayList<>();
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            // Plan: read each header, estimate rows and cut the files into chunks
+            List<Layout> layouts = new ArrayList<>();
+            long totalBytes = 0;
+            long estimatedRows = 0;
+            for (Path path : paths) {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                channels.add(channel);
+                Layout layout = Layout.read(channel, path.toString());
+                if (layout != null) {
+                    layouts.add(layout);
+                    totalBytes += layout.size - layout.dataStart;
+                    estimatedRows += layout.estimatedRows();
+                }
+            }
+            long needed = estimatedRows * ROW_BYTES * 3; // Merged columns, their growth and one chunk being merged
+            if (needed > heapBudget) {
+                throw new IOException("Loading " + paths.size() + " file(s) needs about " + (needed >> 20)
+                        + " MB for an estimated " + estimatedRows + " rows, over the " + (heapBudget >> 20)
+                        + " MB budget; raise -Xmx or dashboard.loadHeapMB, or load a snapshot instead");
+            }
+            long inFlight = Math.max(1, heapBudget / 4 / parallelism);
+            for (Layout layout : layouts) {
+                long chunkBytes = Math.max(layout.averageLineBytes * inFlight / ROW_BYTES, MIN_CHUNK_BYTES);
+                chunkBytes = Math.min(chunkBytes, MAX_CHUNK_BYTES);
+                chunkBytes = Math.min(chunkBytes, Math.max(MIN_CHUNK_BYTES, totalBytes / (parallelism * 4L)));
+                layout.split(chunkBytes, chunks);
+            }
+
+            DataStore.Builder builder;
+            if (chunks.isEmpty()) {
+                builder = new DataStore.Builder();
+            } else {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    builder = pool.invoke(new ParseTask(chunks, 0, chunks.size()));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            DataStore store = builder.build();
+
+            long nanos = System.nanoTime() - start;
+            Instrumentation.recordNanos(Instrumentation.LOAD, nanos);
+            System.out.printf(Locale.ROOT, "Loaded %,d rows (%,d MB) from %d file(s) in %,d ms: %,.0f rows/s on %d thread%s%n",
+                    builder.rowCount(), totalBytes >> 20, paths.size(), nanos / 1_000_000,
+                    builder.rowCount() * 1e9 / Math.max(nanos, 1), parallelism, parallelism == 1 ? "" : "s");
+            return store;
+        } catch (RuntimeException e) {
+            // A chunk that could not be mapped; the pool may have wrapped the exception again
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+            }
+            throw e;
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    // Parses a run of chunks: one chunk directly, more by splitting the run in two
+    private static final class ParseTask extends RecursiveTask<DataStore.Builder> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        ParseTask(List<Chunk> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected DataStore.Builder compute() {
+            if (to - from == 1) {
+                return chunks.get(from).parse();
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask right = new ParseTask(chunks, mid, to);
+            right.fork();
+            DataStore.Builder left = new ParseTask(chunks, from, mid).compute();
+            return left.addAll(right.join());
+        }
+    }
+
+    // A file's header: the delimiter, the columns used and where the data rows start
+    private static final class Layout {
+
+        final FileChannel channel;
+        final String source;
+        final long size;
+        final byte delimiter;
+        final int[] columns;
+        final int needed;
+        final long dataStart;
+        final long averageLineBytes;
+
+        private Layout(FileChannel channel, String source, long size, byte delimiter, int[] columns,
+                       long dataStart, long averageLineBytes) {
+            this.channel = channel;
+            this.source = source;
+            this.size = size;
+            this.delimiter = delimiter;
+            this.columns = columns;
+            this.dataStart = dataStart;
+            this.averageLineBytes = averageLineBytes;
+            int max = 0;
+            for (int column : columns) {
+                max = Math.max(max, column + 1);
+            }
+            this.needed = max;
+        }
+
+        // Reads the header and samples the first lines; null for an empty file
+        static Layout read(FileChannel channel, String source) throws IOException {
+            long size = channel.size();
+            if (size == 0) {
+                return null;
+            }
+            ByteBuffer sample = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, SAMPLE_BYTES));
+            int start = 0;
+            if (sample.limit() >= 3 && (sample.get(0) & 0xFF) == 0xEF && (sample.get(1) & 0xFF) == 0xBB
+                    && (sample.get(2) & 0xFF) == 0xBF) {
+                start = 3; // Byte order mark
+            }
+            int end = indexOf(sample, start, sample.limit(), (byte) '\n');
+            if (end < 0 && sample.limit() < size) {
+                throw new IOException(source + ": header line longer than " + SAMPLE_BYTES + " bytes");
+            }
+            int headerEnd = end < 0 ? sample.limit() : end;
+            long dataStart = end < 0 ? size : end + 1;
+
+            byte delimiter = indexOf(sample, start, headerEnd, (byte) '\t') >= 0 ? (byte) '\t' : (byte) ',';
+            Tokenizer header = new Tokenizer(sample, delimiter);
+            header.split(start, trimLineEnd(sample, start, headerEnd));
+            int[] columns = new int[CsvLoader.COLUMN_NAMES.length];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = header.find(CsvLoader.COLUMN_NAMES[c]);
+            }
+            if (columns[CsvLoader.COUNTRY] < 0 || columns[CsvLoader.METRIC] < 0
+                    || columns[CsvLoader.YEAR] < 0 || columns[CsvLoader.VALUE] < 0) {
+                throw new IOException(source + ": header must name country, metric, year and value columns");
+            }
+
+            // Average line length of the sampled rows, for the row estimate
+            int lines = 0;
+            int sampled = 0;
+            for (int i = (int) Math.min(dataStart, sample.limit()); i < sample.limit(); ) {
+                int next = indexOf(sample, i, sample.limit(), (byte) '\n');
+                if (next < 0) {
+                    break;
+                }
+                lines++;
+                sampled = next + 1 - (int) dataStart;
+                i = next + 1;
+            }
+            long averageLineBytes = lines > 0 ? Math.max(1, sampled / lines) : Math.max(1, headerEnd - start);
+            return new Layout(channel, source, size, delimiter, columns, dataStart, averageLineBytes);
+        }
+
+        long estimatedRows() {
+            return (size - dataStart) / averageLineBytes + 1;
+        }
+
+        // Cuts the data rows into chunks of about chunkBytes that each end after a line break
+        void split(long chunkBytes, List<Chunk> chunks) throws IOException {
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long start = dataStart;
+            while (start < size) {
+                long end = Math.min(start + chunkBytes, size);
+                while (end < size) {
+                    probe.clear();
+                    int read = channel.read(probe, end);
+                    if (read <= 0) {
+                        end = size;
+                        break;
+                    }
+                    int newline = indexOf(probe, 0, read, (byte) '\n');
+                    if (newline >= 0) {
+                        end += newline + 1;
+                        break;
+                    }
+                    end += read;
+                }
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException(source + ": line longer than 2 GB near byte " + start);
+                }
+                chunks.add(new Chunk(this, start, end));
+                start = end;
+            }
+        }
+    }
+
+    // A byte range of whole lines in one file
+    private static final class Chunk {
+
+        final Layout layout;
+        final long start;
+        final long end;
+
+        Chunk(Layout layout, long start, long end) {
+            this.layout = layout;
+            this.start = start;
+            this.end = end;
+        }
+
+        DataStore.Builder parse() {
+            MappedByteBuffer bytes;
+            try {
+                bytes = layout.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int[] columns = layout.columns;
+            long expectedRows = (end - start) / layout.averageLineBytes + 1;
+            DataStore.Builder builder = new DataStore.Builder((int) Math.min(expectedRows + expectedRows / 4, 1 << 26));
+            Tokenizer tokens = new Tokenizer(bytes, layout.delimiter);
+            KeyCache countries = new KeyCache(builder.countries());
+            KeyCache metrics = new KeyCache(builder.metrics());
+            KeyCache sexes = new KeyCache(builder.sexes());
+            KeyCache regions = new KeyCache(builder.regions());
+            KeyCache incomeGroups = new KeyCache(builder.incomeGroups());
+            int defaultSex = columns[CsvLoader.SEX] < 0 ? builder.sexes().encode(DataStore.BOTH_SEXES) : -1;
+            int yearField = columns[CsvLoader.YEAR];
+            int valueField = columns[CsvLoader.VALUE];
+            int regionField = columns[CsvLoader.REGION];
+            int incomeGroupField = columns[CsvLoader.INCOME_GROUP];
+
+            int limit = bytes.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int newline = indexOf(bytes, lineStart, limit, (byte) '\n');
+                int next = newline < 0 ? limit : newline + 1;
+                int lineEnd = trimLineEnd(bytes, lineStart, newline < 0 ? limit : newline);
+                if (lineEnd > lineStart) {
+                    tokens.split(lineStart, lineEnd);
+                    if (tokens.fieldCount >= layout.needed
+                            && isInteger(bytes, tokens.start(yearField), tokens.end(yearField))) {
+                        double value = parseDouble(bytes, tokens.start(valueField), tokens.end(valueField));
+                        if (!Double.isNaN(value)) {
+                            int year = parseInt(bytes, tokens.start(yearField), tokens.end(yearField));
+                            int country = countries.encode(tokens, columns[CsvLoader.COUNTRY]);
+                            int metric = metrics.encode(tokens, columns[CsvLoader.METRIC]);
+                            int sex = defaultSex >= 0 ? defaultSex : sexes.encode(tokens, columns[CsvLoader.SEX]);
+                            builder.add(country, metric, sex, year, value);
+                            if (regionField >= 0 && tokens.end(regionField) > tokens.start(regionField)) {
+                                builder.setRegion(country, regions.encode(tokens, regionField));
+                            }
+                            if (incomeGroupField >= 0 && tokens.end(incomeGroupField) > tokens.start(incomeGroupField)) {
+                                builder.setIncomeGroup(country, incomeGroups.encode(tokens, incomeGroupField));
+                            }
+                        }
+                    }
+                }
+                lineStart = next;
+            }
+            return builder;
+        }
+    }
+
+    // Splits a line of a ByteBuffer into fields without copying it. A quoted field's range
+    // excludes the quotes; escaped quotes ("") inside it are only resolved when a key is decoded.
+    private static final class Tokenizer {
+
+        final ByteBuffer bytes;
+        final byte delimiter;
+        int[] fieldStart = new int[16];
+        int[] fieldEnd = new int[16];
+        boolean[] quoted = new boolean[16];
+        int fieldCount;
+
+        Tokenizer(ByteBuffer bytes, byte delimiter) {
+            this.bytes = bytes;
+            this.delimiter = delimiter;
+        }
+
+        int start(int field) {
+            return fieldStart[field];
+        }
+
+        int end(int field) {
+            return fieldEnd[field];
+        }
+
+        void split(int lineStart, int lineEnd) {
+            fieldCount = 0;
+            int i = lineStart;
+            while (true) {
+                if (fieldCount == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                    quoted = Arrays.copyOf(quoted, fieldCount * 2);
+                }
+                int start = i;
+                int end;
+                boolean isQuoted = i < lineEnd && bytes.get(i) == '"';
+                if (isQuoted) {
+                    start = ++i;
+                    while (i < lineEnd) {
+                        if (bytes.get(i) == '"') {
+                            if (i + 1 < lineEnd && bytes.get(i + 1) == '"') {
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    end = i;
+                    while (i < lineEnd && bytes.get(i) != delimiter) {
+                        i++;
+                    }
+                } else {
+                    while (i < lineEnd && bytes.get(i) != delimiter) {
+                        i++;
+                    }
+                    end = i;
+                }
+
+                // Trim surrounding blanks
+                while (start < end && bytes.get(start) == ' ') {
+                    start++;
+                }
+                while (end > start && bytes.get(end - 1) == ' ') {
+                    end--;
+                }
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = end;
+                quoted[fieldCount] = isQuoted;
+                fieldCount++;
+
+                if (i >= lineEnd) {
+                    return;
+                }
+                i++; // Skip the delimiter
+            }
+        }
+
+        String text(int field) {
+            byte[] raw = new byte[fieldEnd[field] - fieldStart[field]];
+            bytes.get(fieldStart[field], raw);
+            String text = new String(raw, StandardCharsets.UTF_8);
+            return quoted[field] ? text.replace("\"\"", "\"") : text;
+        }
+
+        int find(String[] names) {
+            for (int f = 0; f < fieldCount; f++) {
+                String header = text(f).trim().toLowerCase(Locale.ROOT);
+                for (String name : names) {
+                    if (header.equals(name)) {
+                        return f;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Maps the raw bytes of a key field to its code in a builder dictionary.
+    // Only a key the chunk has not seen yet is decoded into a String.
+    private static final class KeyCache {
+
+        private final StringDictionary dictionary;
+        private byte[][] keys = new byte[16][];
+        private int[] codes = new int[16];
+        private int[] hashes = new int[16];
+        private int size;
+
+        // Open addressing table of (entry + 1), 0 marks an empty slot
+        private int[] table = new int[32];
+
+        KeyCache(StringDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        int encode(Tokenizer tokens, int field) {
+            ByteBuffer bytes = tokens.bytes;
+            int start = tokens.start(field);
+            int length = tokens.end(field) - start;
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + bytes.get(start + i);
+            }
+            hash ^= (hash >>> 16);
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                int entry = table[slot] - 1;
+                if (hashes[entry] == hash && matches(keys[entry], bytes, start, length)) {
+                    return codes[entry];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return add(tokens, field, hash);
+        }
+
+        private int add(Tokenizer tokens, int field, int hash) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            int entry = size++;
+            byte[] key = new byte[tokens.end(field) - tokens.start(field)];
+            tokens.bytes.get(tokens.start(field), key);
+            keys[entry] = key;
+            hashes[entry] = hash;
+            codes[entry] = dictionary.encode(tokens.text(field));
+            if (size * 2 > table.length) {
+                table = new int[table.length * 2];
+                for (int e = 0; e < size; e++) {
+                    insert(e);
+                }
+            } else {
+                insert(entry);
+            }
+            return codes[entry];
+        }
+
+        private void insert(int entry) {
+            int mask = table.length - 1;
+            int slot = hashes[entry] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer bytes, int start, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != bytes.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static int indexOf(ByteBuffer bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Drops a trailing carriage return
+    private static int trimLineEnd(ByteBuffer bytes, int start, int end) {
+        while (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    static boolean isInteger(ByteBuffer bytes, int start, int end) {
+        if (start < end && bytes.get(start) == '-') {
+            start++;
+        }
+        if (start == end || end - start > 9) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int parseInt(ByteBuffer bytes, int start, int end) {
+        boolean negative = bytes.get(start) == '-';
+        int result = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            result = result * 10 + (bytes.get(i) - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    // Same rules as CsvLoader.parseDouble, reading the digits from the buffer
+    static double parseDouble(ByteBuffer bytes, int start, int end) {
+        if (start == end) {
+            return Double.NaN;
+        }
+        int i = start;
+        boolean negative = false;
+        if (bytes.get(i) == '-' || bytes.get(i) == '+') {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 15) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        byte[] raw = new byte[end - start];
+        bytes.get(start, raw);
+        try {
+            return Double.parseDouble(new String(raw, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
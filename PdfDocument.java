@@ -0,0 +1,234 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Minimal PDF writer for reports: pages of RGB images and lines of Helvetica text.
+// Pages are streamed out as they are added, so a report of any length needs only the page
+// at hand in memory; the page tree, catalog and cross-reference table follow on close().
+// Text uses the standard Helvetica fonts in WinAnsi encoding, so characters outside
+// Latin-1 are written as '?'. Coordinates are PDF points from the bottom left corner.
+//
+//     PdfDocument.Page page = new PdfDocument.Page(842, 595);
+//     page.image(PdfDocument.Image.of(chartImage), 30, 200, 782, 360);
+//     page.text(30, 170, 11, false, "Life expectancy rose ...");
+//     pdf.add(page);
+final class PdfDocument implements Closeable {
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int FONT = 3;
+    private static final int BOLD_FONT = 4;
+
+    private final CountingStream out;
+    // File offset of each object, by object number - 1
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> pages = new ArrayList<>();
+
+    PdfDocument(OutputStream out) throws IOException {
+        this.out = new CountingStream(new BufferedOutputStream(out, 64 * 1024));
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        for (int id = CATALOG; id <= BOLD_FONT; id++) {
+            reserve(); // Catalog and page tree are written last
+        }
+        object(FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        object(BOLD_FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+    }
+
+    int pageCount() {
+        return pages.size();
+    }
+
+    void add(Page page) throws IOException {
+        StringBuilder resources = new StringBuilder("<< /Font << /F1 " + FONT + " 0 R /F2 " + BOLD_FONT + " 0 R >>");
+        if (!page.images.isEmpty()) {
+            resources.append(" /XObject <<");
+            for (int i = 0; i < page.images.size(); i++) {
+                Image image = page.images.get(i);
+                int id = reserve();
+                begin(id);
+                write("<< /Type /XObject /Subtype /Image /Width " + image.width + " /Height " + image.height
+                        + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /FlateDecode /Length " + image.data.length + " >>\nstream\n");
+                out.write(image.data);
+                write("\nendstream\nendobj\n");
+                resources.append(" /Im").append(i).append(' ').append(id).append(" 0 R");
+            }
+            resources.append(" >>");
+        }
+        resources.append(" >>");
+
+        byte[] content = deflate(page.content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        int contentId = reserve();
+        begin(contentId);
+        write("<< /Length " + content.length + " /Filter /FlateDecode >>\nstream\n");
+        out.write(content);
+        write("\nendstream\nendobj\n");
+
+        int pageId = reserve();
+        object(pageId, "<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + number(page.width) + " " + number(page.height)
+                + "] /Resources " + resources + " /Contents " + contentId + " 0 R >>");
+        pages.add(pageId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            StringBuilder kids = new StringBuilder();
+            for (int page : pages) {
+                kids.append(page).append(" 0 R ");
+            }
+            object(PAGES, "<< /Type /Pages /Kids [" + kids.toString().trim() + "] /Count " + pages.size() + " >>");
+            object(CATALOG, "<< /Type /Catalog /Pages " + PAGES + " 0 R >>");
+
+            long xref = out.count;
+            StringBuilder table = new StringBuilder("xref\n0 " + (offsets.size() + 1) + "\n0000000000 65535 f \n");
+            for (long offset : offsets) {
+                table.append(String.format(Locale.ROOT, "%010d 00000 n \n", offset));
+            }
+            table.append("trailer\n<< /Size ").append(offsets.size() + 1).append(" /Root ").append(CATALOG)
+                    .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+            write(table.toString());
+        } finally {
+            out.close();
+        }
+    }
+
+    private int reserve() {
+        offsets.add(-1L);
+        return offsets.size();
+    }
+
+    private void begin(int id) throws IOException {
+        offsets.set(id - 1, out.count);
+        write(id + " 0 obj\n");
+    }
+
+    private void object(int id, String body) throws IOException {
+        begin(id);
+        write(body + "\nendobj\n");
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED))) {
+            deflater.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    // One page's drawing operations and the images they use
+    static final class Page {
+        final double width;
+        final double height;
+        private final StringBuilder content = new StringBuilder();
+        private final List<Image> images = new ArrayList<>();
+
+        Page(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        // Draws the image stretched over the rectangle with its bottom left corner at (x, y)
+        Page image(Image image, double x, double y, double width, double height) {
+            content.append("q ").append(number(width)).append(" 0 0 ").append(number(height)).append(' ')
+                    .append(number(x)).append(' ').append(number(y)).append(" cm /Im").append(images.size()).append(" Do Q\n");
+            images.add(image);
+            return this;
+        }
+
+        // Draws one line of text with its baseline starting at (x, y)
+        Page text(double x, double y, double size, boolean bold, String text) {
+            content.append("BT /").append(bold ? "F2 " : "F1 ").append(number(size)).append(" Tf ")
+                    .append(number(x)).append(' ').append(number(y)).append(" Td (").append(escape(text)).append(") Tj ET\n");
+            return this;
+        }
+
+        private static String escape(String text) {
+            StringBuilder escaped = new StringBuilder(text.length() + 8);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '(' || c == ')' || c == '\\') {
+                    escaped.append('\\').append(c);
+                } else if (c < 32 || c > 255 || (c >= 127 && c < 160)) {
+                    escaped.append('?');
+                } else {
+                    escaped.append(c);
+                }
+            }
+            return escaped.toString();
+        }
+    }
+
+    // An RGB image, compressed; made with of() off the writing thread, since that is the slow part
+    static final class Image {
+        final int width;
+        final int height;
+        final byte[] data;
+
+        private Image(int width, int height, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+
+        static Image of(BufferedImage image) throws IOException {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            byte[] rgb = new byte[width * height * 3];
+            int[] row = new int[width];
+            int at = 0;
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int pixel : row) {
+                    rgb[at++] = (byte) (pixel >> 16);
+                    rgb[at++] = (byte) (pixel >> 8);
+                    rgb[at++] = (byte) pixel;
+                }
+            }
+            return new Image(width, height, deflate(rgb));
+        }
+    }
+
+    // Tracks the file offset for the cross-reference table
+    private static final class CountingStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.SeriesRenderingOrder;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.xy.DefaultXYDataset;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+// A chart that shows one year at a time, for playing the data through its years.
+// Each frame is one year's values in a flat array: frame() computes it from the store on any
+// thread, and apply() writes it into the chart's own dataset on the EDT as one change event,
+// so playing creates no charts or datasets. The axes are fixed to the range of all frames, so
+// bars and points move against a steady scale. Made by ChartBuilder.createPlaybackChart.
+public abstract class PlaybackChart {
+
+    final DataStore store;
+    final int sex;
+    final JFreeChart chart;
+    private final String title;
+
+    PlaybackChart(DataStore store, int sex, JFreeChart chart) {
+        this.store = store;
+        this.sex = sex;
+        this.chart = chart;
+        this.title = chart.getTitle().getText();
+    }
+
+    public JFreeChart chart() {
+        return chart;
+    }
+
+    // One frame per year of the store
+    public int frameCount() {
+        return store.yearCount();
+    }
+
+    // Length of a frame's value array
+    public abstract int frameSize();
+
+    // Writes the values of the frame into target; reads only the store, under its read lock
+    public void frame(int frame, double[] target) {
+        Lock read = store.lock().readLock();
+        read.lock();
+        try {
+            compute(frame, target);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    abstract void compute(int frame, double[] target);
+
+    // Shows the frame's values, as computed by frame(); call on the EDT
+    public void apply(int frame, double[] values) {
+        write(values);
+        chart.setTitle(title + ", " + store.year(frame));
+    }
+
+    abstract void write(double[] values);
+
+    // Bars of each metric for one country, or the means across all countries
+    static final class Bars extends PlaybackChart {
+        private final int country;
+        private final AggregateCube aggregates;
+        private final DefaultCategoryDataset dataset;
+        private final String column;
+
+        Bars(DataStore store, AggregateCube aggregates, int country, int sex, String title, String axisLabel) {
+            this(store, aggregates, country, sex, new DefaultCategoryDataset(), title, axisLabel);
+        }
+
+        private Bars(DataStore store, AggregateCube aggregates, int country, int sex, DefaultCategoryDataset dataset,
+                     String title, String axisLabel) {
+            super(store, sex, ChartFactory.createBarChart(title, "Metric", axisLabel, dataset,
+                    PlotOrientation.VERTICAL, true, true, false));
+            this.country = country;
+            this.aggregates = aggregates;
+            this.dataset = dataset;
+            this.column = country >= 0 ? store.countryName(country) : ChartBuilder.ALL_COUNTRIES;
+
+            // Fixed scale from zero to the largest value of any frame
+            double max = 0;
+            double[] values = new double[frameSize()];
+            for (int y = 0; y < frameCount(); y++) {
+                frame(y, values);
+                for (double value : values) {
+                    if (!Double.isNaN(value)) {
+                        max = Math.max(max, value);
+                    }
+                }
+            }
+            CategoryPlot plot = chart.getCategoryPlot();
+            plot.setRangeGridlinesVisible(true);
+            plot.getRangeAxis().setRange(0, max > 0 ? max * 1.05 : 1);
+            frame(0, values);
+            write(values);
+        }
+
+        @Override
+        public int frameSize() {
+            return store.metricCount();
+        }
+
+        @Override
+        void compute(int frame, double[] target) {
+            for (int m = 0; m < store.metricCount(); m++) {
+                target[m] = country >= 0 ? store.value(country, m, sex, frame) : aggregates.global(Statistic.MEAN, m, sex, frame);
+            }
+        }
+
+        @Override
+        void write(double[] values) {
+            dataset.setNotify(false);
+            try {
+                for (int m = 0; m < values.length; m++) {
+                    dataset.setValue(Double.isNaN(values[m]) ? null : values[m], store.metricName(m), column);
+                }
+            } finally {
+                dataset.setNotify(true);
+            }
+        }
+    }
+
+    // Every country as a point of one metric against another, Gapminder style, with the
+    // selected country as a series of its own
+    static final class Points extends PlaybackChart {
+        private final int xMetric;
+        private final int yMetric;
+        private final int highlight;
+        private final FrameXYDataset dataset;
+        private final double[][] all;
+        private final double[][] selected;
+
+        Points(DataStore store, int xMetric, int yMetric, int highlight, int sex, String title, String xLabel, String yLabel) {
+            this(store, xMetric, yMetric, highlight, sex, new FrameXYDataset(), title, xLabel, yLabel);
+        }
+
+        private Points(DataStore store, int xMetric, int yMetric, int highlight, int sex, FrameXYDataset dataset,
+                       String title, String xLabel, String yLabel) {
+            super(store, sex, ChartFactory.createScatterPlot(title, xLabel, yLabel, dataset,
+                    PlotOrientation.VERTICAL, true, true, false));
+            this.xMetric = xMetric;
+            this.yMetric = yMetric;
+            this.highlight = highlight;
+            this.dataset = dataset;
+            // The dataset keeps these arrays; frames are copied into them
+            all = new double[2][store.countryCount()];
+            dataset.addSeries("Countries", all);
+            selected = new double[2][highlight >= 0 ? 1 : 0];
+            if (highlight >= 0) {
+                dataset.addSeries(store.countryName(highlight), selected);
+            }
+
+            // Fixed scales over the points of every frame
+            double minX = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int countries = store.countryCount();
+            double[] values = new double[frameSize()];
+            for (int y = 0; y < frameCount(); y++) {
+                frame(y, values);
+                for (int c = 0; c < countries; c++) {
+                    if (!Double.isNaN(values[c]) && !Double.isNaN(values[countries + c])) {
+                        minX = Math.min(minX, values[c]);
+                        maxX = Math.max(maxX, values[c]);
+                        minY = Math.min(minY, values[countries + c]);
+                        maxY = Math.max(maxY, values[countries + c]);
+                    }
+                }
+            }
+            XYPlot plot = chart.getXYPlot();
+            plot.setSeriesRenderingOrder(SeriesRenderingOrder.FORWARD); // Selected country on top
+            if (minX <= maxX) {
+                double padX = Math.max((maxX - minX) * 0.05, 0.5);
+                double padY = Math.max((maxY - minY) * 0.05, 0.5);
+                plot.getDomainAxis().setRange(minX - padX, maxX + padX);
+                plot.getRangeAxis().setRange(minY - padY, maxY + padY);
+            }
+            frame(0, values);
+            write(values);
+        }
+
+        @Override
+        public int frameSize() {
+            return 2 * store.countryCount() + 2;
+        }
+
+        // x of every country, then y of every country, then x and y of the selected country
+        @Override
+        void compute(int frame, double[] target) {
+            int countries = store.countryCount();
+            for (int c = 0; c < countries; c++) {
+                target[c] = store.value(c, xMetric, sex, frame);
+                target[countries + c] = store.value(c, yMetric, sex, frame);
+            }
+            target[2 * countries] = highlight >= 0 ? store.value(highlight, xMetric, sex, frame) : Double.NaN;
+            target[2 * countries + 1] = highlight >= 0 ? store.value(highlight, yMetric, sex, frame) : Double.NaN;
+        }
+
+        @Override
+        void write(double[] values) {
+            int countries = store.countryCount();
+            System.arraycopy(values, 0, all[0], 0, countries);
+            System.arraycopy(values, countries, all[1], 0, countries);
+            if (highlight >= 0) {
+                selected[0][0] = values[2 * countries];
+                selected[1][0] = values[2 * countries + 1];
+            }
+            dataset.changed();
+        }
+    }
+
+    // XY dataset over arrays that are changed in place, then announced with one change event
+    private static final class FrameXYDataset extends DefaultXYDataset {
+        private static final long serialVersionUID = 1L;
+
+        void changed() {
+            fireDatasetChanged();
+        }
+    }
+
+    // x and y metric of the points chart: the first life expectancy / HALE pair when the data
+    // has one, otherwise the first two metrics
+    static int[] pointMetrics(DataStore store) {
+        List<int[]> pairs = CompareAnalysis.metricPairs(store);
+        if (!pairs.isEmpty()) {
+            return pairs.get(0);
+        }
+        return new int[]{0, Math.min(1, store.metricCount() - 1)};
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+// Type-ahead lookup over a list of names (countries, regions, income groups).
+// Every word start of every name is a key, lower-cased and kept in one sorted array, so
+// "kor" finds "Republic of Korea" with a binary search and a short scan instead of a pass
+// over all names. Names that start with the typed text come before names that only have
+// a later word starting with it; otherwise results keep the order the names were given in.
+public final class PrefixIndex {
+
+    private final String[] names;
+    private final String[] keys;
+    private final int[] ids;
+
+    public PrefixIndex(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        List<String> keyList = new ArrayList<>();
+        List<Integer> idList = new ArrayList<>();
+        for (int id = 0; id < this.names.length; id++) {
+            String lower = this.names[id].toLowerCase(Locale.ROOT);
+            for (int i = 0; i < lower.length(); i++) {
+                boolean wordStart = Character.isLetterOrDigit(lower.charAt(i))
+                        && (i == 0 || !Character.isLetterOrDigit(lower.charAt(i - 1)));
+                if (wordStart) {
+                    keyList.add(lower.substring(i));
+                    idList.add(id);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+        this.keys = new String[order.length];
+        this.ids = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyList.get(order[i]);
+            ids[i] = idList.get(order[i]);
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Up to limit names with a word starting with the text, ignoring case; the first names for empty text
+    public List<String> search(String text, int limit) {
+        String prefix = text.trim().toLowerCase(Locale.ROOT);
+        List<String> result = new ArrayList<>();
+        if (prefix.isEmpty()) {
+            for (int id = 0; id < names.length && result.size() < limit; id++) {
+                result.add(names[id]);
+            }
+            return result;
+        }
+
+        // Rank 2: the name itself starts with the text, 1: a later word does
+        byte[] rank = new byte[names.length];
+        List<Integer> matches = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+            int id = ids[i];
+            if (rank[id] == 0) {
+                matches.add(id);
+            }
+            boolean whole = keys[i].length() == names[id].length();
+            rank[id] = (byte) Math.max(rank[id], whole ? 2 : 1);
+        }
+        matches.sort(Comparator.<Integer>comparingInt(id -> -rank[id]).thenComparingInt(id -> id));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            result.add(names[matches.get(i)]);
+        }
+        return result;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,195 @@
+import java.nio.DoubleBuffer;
+import java.util.BitSet;
+
+// Filters a DataStore with bitmap indexes.
+// Country attributes (region, income group) are indexed as bitmaps of countries, the other
+// dimensions are bitmaps of their own codes, and one bitmap over all cells marks those with
+// a value. A query ANDs the dimensions (OR within a dimension, so several regions or sexes
+// may be picked), then lays the selected years into the cell bitmap for every selected
+// (country, metric, sex) run and keeps the cells with a value, a few word operations per run.
+//
+//     RowSet rows = engine.query().incomeGroups("High income").sexes("Female").years(2000, 2019).execute();
+public final class QueryEngine {
+
+    private final DataStore store;
+    private final BitSet[] regionCountries;
+    private final BitSet[] incomeGroupCountries;
+
+    // Cells that hold a value, and the store version it was built for
+    private long[] present;
+    private long presentVersion = -1;
+
+    public QueryEngine(DataStore store) {
+        this.store = store;
+        this.regionCountries = new BitSet[store.regionCount()];
+        for (int r = 0; r < regionCountries.length; r++) {
+            regionCountries[r] = new BitSet(store.countryCount());
+        }
+        this.incomeGroupCountries = new BitSet[store.incomeGroupCount()];
+        for (int g = 0; g < incomeGroupCountries.length; g++) {
+            incomeGroupCountries[g] = new BitSet(store.countryCount());
+        }
+        for (int c = 0; c < store.countryCount(); c++) {
+            if (store.countryRegion(c) >= 0) {
+                regionCountries[store.countryRegion(c)].set(c);
+            }
+            if (store.countryIncomeGroup(c) >= 0) {
+                incomeGroupCountries[store.countryIncomeGroup(c)].set(c);
+            }
+        }
+        present();
+    }
+
+    public DataStore getStore() {
+        return store;
+    }
+
+    public Query query() {
+        return new Query();
+    }
+
+    // Countries of a region or income group; copies
+    public BitSet regionCountries(int region) {
+        return (BitSet) regionCountries[region].clone();
+    }
+
+    public BitSet incomeGroupCountries(int incomeGroup) {
+        return (BitSet) incomeGroupCountries[incomeGroup].clone();
+    }
+
+    // The value bitmap, rebuilt when values were changed in place since the last query
+    private synchronized long[] present() {
+        long version = store.version();
+        if (present == null || presentVersion != version) {
+            DoubleBuffer values = store.values();
+            long[] words = new long[(store.cellCount() + 63) >>> 6];
+            for (int offset = 0; offset < store.cellCount(); offset++) {
+                if (!Double.isNaN(values.get(offset))) {
+                    words[offset >>> 6] |= 1L << offset;
+                }
+            }
+            present = words;
+            presentVersion = version;
+        }
+        return present;
+    }
+
+    private RowSet execute(BitSet countries, BitSet metrics, BitSet sexes, BitSet years) {
+        long start = System.nanoTime();
+        long[] present = present();
+        long[] words = new long[present.length];
+        long[] yearWords = years.toLongArray();
+        for (int c = countries.nextSetBit(0); c >= 0; c = countries.nextSetBit(c + 1)) {
+            for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+                for (int s = sexes.nextSetBit(0); s >= 0; s = sexes.nextSetBit(s + 1)) {
+                    or(words, store.offset(c, m, s, 0), yearWords);
+                }
+            }
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= present[i];
+        }
+        RowSet rows = new RowSet(store, words, countries, metrics, sexes, years);
+        Instrumentation.record(Instrumentation.QUERY, start);
+        return rows;
+    }
+
+    // ORs the bits into target starting at bit position base
+    private static void or(long[] target, int base, long[] bits) {
+        int shift = base & 63;
+        int index = base >>> 6;
+        for (int i = 0; i < bits.length; i++, index++) {
+            target[index] |= bits[i] << shift;
+            if (shift != 0 && bits[i] >>> (64 - shift) != 0) {
+                target[index + 1] |= bits[i] >>> (64 - shift);
+            }
+        }
+    }
+
+    // Filters collected one dimension at a time; a dimension without a filter keeps everything
+    public final class Query {
+
+        private final BitSet countries = all(store.countryCount());
+        private final BitSet metrics = all(store.metricCount());
+        private final BitSet sexes = all(store.sexCount());
+        private final BitSet years = all(store.yearCount());
+
+        private Query() {
+        }
+
+        public Query countries(String... names) {
+            BitSet selected = new BitSet();
+            for (String name : names) {
+                selected.set(code(store.countryIndex(name), "country", name));
+            }
+            countries.and(selected);
+            return this;
+        }
+
+        public Query regions(String... names) {
+            BitSet selected = new BitSet();
+            for (String name : names) {
+                selected.or(regionCountries[code(store.regionIndex(name), "region", name)]);
+            }
+            countries.and(selected);
+            return this;
+        }
+
+        public Query incomeGroups(String... names) {
+            BitSet selected = new BitSet();
+            for (String name : names) {
+                selected.or(incomeGroupCountries[code(store.incomeGroupIndex(name), "income group", name)]);
+            }
+            countries.and(selected);
+            return this;
+        }
+
+        public Query metrics(String... names) {
+            BitSet selected = new BitSet();
+            for (String name : names) {
+                selected.set(code(store.metricIndex(name), "metric", name));
+            }
+            metrics.and(selected);
+            return this;
+        }
+
+        public Query sexes(String... names) {
+            BitSet selected = new BitSet();
+            for (String name : names) {
+                selected.set(code(store.sexIndex(name), "sex", name));
+            }
+            sexes.and(selected);
+            return this;
+        }
+
+        // Keeps the years from first to last, both included
+        public Query years(int first, int last) {
+            BitSet selected = new BitSet();
+            for (int y = 0; y < store.yearCount(); y++) {
+                if (store.year(y) >= first && store.year(y) <= last) {
+                    selected.set(y);
+                }
+            }
+            years.and(selected);
+            return this;
+        }
+
+        public RowSet execute() {
+            return QueryEngine.this.execute((BitSet) countries.clone(), (BitSet) metrics.clone(),
+                    (BitSet) sexes.clone(), (BitSet) years.clone());
+        }
+
+        private int code(int code, String dimension, String name) {
+            if (code < 0) {
+                throw new IllegalArgumentException("Unknown " + dimension + ": " + name);
+            }
+            return code;
+        }
+    }
+
+    private static BitSet all(int count) {
+        BitSet bits = new BitSet(count);
+        bits.set(0, count);
+        return bits;
+    }
+}
@@ -0,0 +1,449 @@
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.general.PieDataset;
+import org.jfree.data.xy.XYDataset;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+// Headless regression and load harness for the chart pipeline. Charts and stories are built
+// through DashboardViews, as by showVisualization, and drawn at the dashboard's chart size;
+// the dataset table goes through the model of showDataset. The data is synthetic, generated
+// at the requested scale.
+//
+//     java RegressionHarness record [--countries N] [--years N] [--golden FILE] [--images DIR]
+//     java RegressionHarness check  [--countries N] [--years N] [--golden FILE] [--images DIR]
+//     java RegressionHarness load   [--countries N] [--years N] [--threads N] [--builds N] [--cached]
+//
+// record writes the golden values of every chart type, sex and kind of selection (a country,
+// All Countries, a region, an income group) and of the dataset table, sorted and filtered;
+// check compares against them and exits with 1 on a difference. --images also records or
+// compares the drawn charts as PNG files; fonts differ between machines, so image goldens are
+// only comparable where they were recorded. load builds and draws charts on several threads
+// and reports p50/p99 latency and heap growth per thousand builds.
+public final class RegressionHarness {
+
+    // The dashboard's chart panel size
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    // Dataset rows fingerprinted after each sort, from the top as the window shows them
+    private static final int DATASET_ROWS = 100;
+
+    // Image comparison: a pixel differs when a channel is off by more than this, and the
+    // image differs when more than IMAGE_TOLERANCE of its pixels do
+    private static final int CHANNEL_TOLERANCE = 16;
+    private static final double IMAGE_TOLERANCE = 0.005;
+
+    private RegressionHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length == 0) {
+            usage();
+        }
+        String mode = args[0];
+        int countries = 40;
+        int years = 20;
+        long seed = 42;
+        Path golden = null;
+        Path images = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int builds = 5000;
+        boolean cached = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--countries":
+                    countries = Integer.parseInt(args[++i]);
+                    break;
+                case "--years":
+                    years = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--golden":
+                    golden = Paths.get(args[++i]);
+                    break;
+                case "--images":
+                    images = Paths.get(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--builds":
+                    builds = Integer.parseInt(args[++i]);
+                    break;
+                case "--cached":
+                    cached = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    usage();
+            }
+        }
+        if (golden == null) {
+            golden = Paths.get("regression", "golden-" + countries + "x" + years + ".txt");
+        }
+
+        DashboardViews views = new DashboardViews(SampleData.synthetic(countries, years, seed), Indicator.LIFE_EXPECTANCY);
+        String scale = countries + " countries x " + years + " years, seed " + seed;
+        switch (mode) {
+            case "record":
+                record(views, scale, golden, images);
+                break;
+            case "check":
+                System.exit(check(views, golden, images) ? 0 : 1);
+                break;
+            case "load":
+                load(views, scale, threads, builds, cached);
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: RegressionHarness record|check|load [--countries N] [--years N] [--seed N]"
+                + " [--golden FILE] [--images DIR] [--threads N] [--builds N] [--cached]");
+        System.exit(2);
+    }
+
+    private static void record(DashboardViews views, String scale, Path golden, Path images) throws IOException {
+        Map<String, String> values = fingerprints(views, images, true);
+        List<String> lines = new ArrayList<>();
+        lines.add("# RegressionHarness golden values: " + scale);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            lines.add(entry.getKey() + "\t" + entry.getValue());
+        }
+        if (golden.getParent() != null) {
+            Files.createDirectories(golden.getParent());
+        }
+        Files.write(golden, lines, StandardCharsets.UTF_8);
+        System.out.println("Recorded " + values.size() + " values to " + golden
+                + (images != null ? " and chart images to " + images : ""));
+    }
+
+    private static boolean check(DashboardViews views, Path golden, Path images) throws IOException {
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(golden, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                int tab = line.lastIndexOf('\t');
+                expected.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        }
+
+        Map<String, String> actual = fingerprints(views, images, false);
+        int failures = 0;
+        for (Map.Entry<String, String> entry : actual.entrySet()) {
+            String want = expected.remove(entry.getKey());
+            if (!entry.getValue().equals(want)) {
+                System.out.println("FAIL " + entry.getKey().replace('\t', ' ')
+                        + "\n  expected " + want + "\n  actual   " + entry.getValue());
+                failures++;
+            }
+        }
+        for (String missing : expected.keySet()) {
+            System.out.println("FAIL " + missing.replace('\t', ' ') + " is no longer produced");
+            failures++;
+        }
+        System.out.println(failures == 0
+                ? "OK: " + actual.size() + " values match " + golden
+                : failures + " of " + actual.size() + " values differ from " + golden);
+        return failures == 0;
+    }
+
+    // Fingerprints of every chart and of the dataset table, in a fixed order. With images,
+    // each chart is also written there (record) or compared with the image there (check).
+    private static Map<String, String> fingerprints(DashboardViews views, Path images, boolean record) throws IOException {
+        if (images != null && record) {
+            Files.createDirectories(images);
+        }
+        DataStore store = views.store();
+        Map<String, String> values = new LinkedHashMap<>();
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int imageFailures = 0;
+        for (String selection : selections(views)) {
+            for (ChartType type : ChartType.values()) {
+                for (int sex = 0; sex < store.sexCount(); sex++) {
+                    ChartView view = show(views, selection, type, sex, image);
+                    String key = "chart\t" + selection + "\t" + type.id() + "\t" + store.sexName(sex);
+                    values.put(key, view.chart.getTitle().getText() + " | " + fingerprint(view.chart)
+                            + " | story " + crc(view.story));
+                    if (images != null && !compareImage(image, images.resolve(fileName(selection, type, store.sexName(sex))), record)) {
+                        System.out.println("FAIL image of " + key.replace('\t', ' '));
+                        imageFailures++;
+                    }
+                }
+            }
+        }
+        if (imageFailures > 0) {
+            values.put("images", imageFailures + " differ");
+        }
+
+        // The dataset window: every column sorted both ways, then a country filter
+        DatasetTableModel model = views.datasetModel();
+        StringBuilder columns = new StringBuilder();
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            columns.append(column > 0 ? ", " : "").append(model.getColumnName(column));
+        }
+        values.put("dataset\tcolumns", model.getRowCount() + " rows: " + columns);
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            for (boolean ascending : new boolean[]{true, false}) {
+                model.sort(column, ascending);
+                values.put("dataset\tsort\t" + model.getColumnName(column) + (ascending ? " ascending" : " descending"),
+                        rows(model, Math.min(DATASET_ROWS, model.getRowCount())));
+            }
+        }
+        String country = store.countryName(store.countryCount() / 2);
+        model.setCountryFilter(country);
+        values.put("dataset\tfilter\t" + country, model.getRowCount() + " rows " + rows(model, model.getRowCount()));
+        return values;
+    }
+
+    // One entry of each kind of the country selector
+    private static List<String> selections(DashboardViews views) {
+        List<String> items = views.selectorItems();
+        List<String> selections = new ArrayList<>();
+        selections.add(items.get(0));
+        selections.add(DashboardViews.ALL_COUNTRIES);
+        for (String item : items) {
+            if (item.endsWith(DashboardViews.REGION_SUFFIX)) {
+                selections.add(item);
+                break;
+            }
+        }
+        for (String item : items) {
+            if (item.endsWith(DashboardViews.INCOME_GROUP_SUFFIX)) {
+                selections.add(item);
+                break;
+            }
+        }
+        return selections;
+    }
+
+    // The view as the dashboard shows it: from the cache or built, resampled to the panel
+    // width and drawn
+    private static ChartView show(DashboardViews views, String selection, ChartType type, int sex, BufferedImage image) {
+        ChartView view = views.view(selection, type, sex);
+        draw(view, image);
+        return view;
+    }
+
+    // Item count, sum and a checksum of the keys and values of the chart's datasets, as drawn
+    private static String fingerprint(JFreeChart chart) {
+        Plot plot = chart.getPlot();
+        StringBuilder data = new StringBuilder();
+        double[] sum = new double[1];
+        int items = 0;
+        if (plot instanceof CategoryPlot) {
+            CategoryPlot categoryPlot = (CategoryPlot) plot;
+            for (int i = 0; i < categoryPlot.getDatasetCount(); i++) {
+                CategoryDataset dataset = categoryPlot.getDataset(i);
+                if (dataset == null) {
+                    continue;
+                }
+                for (int row = 0; row < dataset.getRowCount(); row++) {
+                    for (int column = 0; column < dataset.getColumnCount(); column++) {
+                        data.append(dataset.getRowKey(row)).append('/').append(dataset.getColumnKey(column)).append('=');
+                        append(data, sum, dataset.getValue(row, column));
+                        items++;
+                    }
+                }
+            }
+        } else if (plot instanceof XYPlot) {
+            XYPlot xyPlot = (XYPlot) plot;
+            for (int i = 0; i < xyPlot.getDatasetCount(); i++) {
+                XYDataset dataset = xyPlot.getDataset(i);
+                if (dataset == null) {
+                    continue;
+                }
+                for (int series = 0; series < dataset.getSeriesCount(); series++) {
+                    data.append(dataset.getSeriesKey(series)).append(':');
+                    for (int item = 0; item < dataset.getItemCount(series); item++) {
+                        data.append(String.format(Locale.ROOT, "%.6g,", dataset.getXValue(series, item)));
+                        append(data, sum, dataset.getYValue(series, item));
+                        items++;
+                    }
+                }
+            }
+        } else if (plot instanceof PiePlot) {
+            PieDataset<?> dataset = ((PiePlot<?>) plot).getDataset();
+            for (int item = 0; item < dataset.getItemCount(); item++) {
+                data.append(dataset.getKey(item)).append('=');
+                append(data, sum, dataset.getValue(item));
+                items++;
+            }
+        }
+        return String.format(Locale.ROOT, "%d items, sum %.4f, crc %s", items, sum[0], crc(data.toString()));
+    }
+
+    private static void append(StringBuilder data, double[] sum, Number value) {
+        if (value == null) {
+            data.append("null;");
+            return;
+        }
+        double v = value.doubleValue();
+        if (!Double.isNaN(v)) {
+            sum[0] += v;
+        }
+        // Six significant digits, so the values do not depend on the statistics kernel's rounding
+        data.append(String.format(Locale.ROOT, "%.6g;", v));
+    }
+
+    // Checksum of the first rows of the table as shown
+    private static String rows(DatasetTableModel model, int rows) {
+        StringBuilder data = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                Object value = model.getValueAt(row, column);
+                data.append(value instanceof Double ? String.format(Locale.ROOT, "%.6g", (Double) value) : value).append(';');
+            }
+            data.append('\n');
+        }
+        return "crc " + crc(data.toString());
+    }
+
+    private static String crc(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    // e.g. "bar-Both sexes-Europe (region).png" -> "bar-both-sexes-europe-region.png"
+    private static String fileName(String selection, ChartType type, String sex) {
+        String name = (type.id() + "-" + sex + "-" + selection).toLowerCase(Locale.ROOT);
+        return name.replaceAll("[^a-z0-9]+", "-").replaceAll("-$", "") + ".png";
+    }
+
+    // Writes the image (record) or compares it with the one written before (check)
+    private static boolean compareImage(BufferedImage image, Path file, boolean record) throws IOException {
+        if (record) {
+            ImageIO.write(image, "png", file.toFile());
+            return true;
+        }
+        if (!Files.exists(file)) {
+            return false;
+        }
+        BufferedImage expected = ImageIO.read(file.toFile());
+        if (expected.getWidth() != image.getWidth() || expected.getHeight() != image.getHeight()) {
+            return false;
+        }
+        long differing = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = image.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    if (Math.abs(((a >> shift) & 0xff) - ((b >> shift) & 0xff)) > CHANNEL_TOLERANCE) {
+                        differing++;
+                        break;
+                    }
+                }
+            }
+        }
+        return differing <= IMAGE_TOLERANCE * image.getWidth() * image.getHeight();
+    }
+
+    // Builds and draws charts on a pool of threads, cycling through every selector entry, chart
+    // type and sex. Without --cached every request builds its chart, as on a cache miss; with
+    // it requests go through the chart cache. A tenth of the builds warm up first and are not
+    // counted.
+    private static void load(DashboardViews views, String scale, int threads, int builds, boolean cached) throws Exception {
+        DataStore store = views.store();
+        List<String> selections = views.selectorItems();
+        ChartType[] types = ChartType.values();
+        int requests = selections.size() * types.length * store.sexCount();
+        LatencyHistogram shown = new LatencyHistogram("harness.show");
+        LatencyHistogram built = Instrumentation.histogram(Instrumentation.CHART_BUILD);
+
+        run(views, selections, types, requests, threads, Math.max(builds / 10, 1), cached, null);
+        built.reset();
+        long heapBefore = liveHeap();
+        long start = System.nanoTime();
+        run(views, selections, types, requests, threads, builds, cached, shown);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapAfter = liveHeap();
+
+        System.out.println("Load: " + builds + (cached ? " cached" : "") + " chart requests on " + threads
+                + " threads, " + scale);
+        System.out.printf(Locale.ROOT, "  build          p50 %8.2f ms   p99 %8.2f ms   (%d builds)%n",
+                built.getP50Millis(), built.getP99Millis(), built.getCount());
+        System.out.printf(Locale.ROOT, "  build + draw   p50 %8.2f ms   p99 %8.2f ms%n",
+                shown.getP50Millis(), shown.getP99Millis());
+        System.out.printf(Locale.ROOT, "  throughput     %.0f charts/s%n", builds / seconds);
+        System.out.printf(Locale.ROOT, "  heap growth    %.1f KB per 1000 builds (live heap %.1f MB -> %.1f MB)%n",
+                (heapAfter - heapBefore) / 1024.0 * 1000 / builds, heapBefore / 1048576.0, heapAfter / 1048576.0);
+    }
+
+    private static void run(DashboardViews views, List<String> selections, ChartType[] types, int requests,
+                            int threads, int builds, boolean cached, LatencyHistogram shown) throws InterruptedException {
+        int sexes = views.store().sexCount();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+                for (int i = next.getAndIncrement(); i < builds; i = next.getAndIncrement()) {
+                    int request = i % requests;
+                    String selection = selections.get(request / (types.length * sexes));
+                    ChartType type = types[request / sexes % types.length];
+                    int sex = request % sexes;
+                    long start = System.nanoTime();
+                    if (cached) {
+                        show(views, selection, type, sex, image);
+                    } else {
+                        draw(views.build(selection, type, sex), image);
+                    }
+                    if (shown != null) {
+                        shown.recordNanos(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.DAYS);
+    }
+
+    private static void draw(ChartView view, BufferedImage image) {
+        DownsampledXYDataset.resample(view.chart, WIDTH);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            view.chart.draw(g2, new Rectangle(WIDTH, HEIGHT));
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    // Heap in use after a full collection
+    private static long liveHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,194 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+// "Export report" dialog: pick countries, chart types and PDF or PNG output, then the pages
+// are rendered by a ReportExporter on a background worker while a progress bar follows it.
+// Cancel stops the export; closing the dialog while it runs cancels it too.
+final class ReportExportDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ChartBuilder builder;
+    private final StoryEngine stories;
+    private final int sex;
+
+    private final JList<String> countryList;
+    private final List<JCheckBox> typeBoxes = new ArrayList<>();
+    private final JComboBox<ReportExporter.Format> formatBox = new JComboBox<>(ReportExporter.Format.values());
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JButton exportButton = new JButton("Export...");
+    private final JButton closeButton = new JButton("Close");
+
+    private ReportExporter exporter;
+    private SwingWorker<Integer, Integer> worker;
+
+    ReportExportDialog(Frame owner, ChartBuilder builder, StoryEngine stories, int sex,
+                       List<String> countries, String selectedCountry, ChartType selectedType) {
+        super(owner, "Export Report", false);
+        this.builder = builder;
+        this.stories = stories;
+        this.sex = sex;
+
+        countryList = new JList<>(countries.toArray(new String[0]));
+        countryList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        countryList.setSelectedValue(selectedCountry, true);
+        JButton allButton = new JButton("Select All");
+        allButton.addActionListener(e -> countryList.setSelectionInterval(0, countries.size() - 1));
+        JPanel countryPanel = new JPanel(new BorderLayout(0, 5));
+        countryPanel.setBorder(BorderFactory.createTitledBorder("Countries"));
+        countryPanel.add(new JScrollPane(countryList), BorderLayout.CENTER);
+        countryPanel.add(allButton, BorderLayout.SOUTH);
+
+        JPanel optionPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        optionPanel.setBorder(BorderFactory.createTitledBorder("Charts"));
+        for (ChartType type : ChartType.values()) {
+            JCheckBox box = new JCheckBox(type.label(), type == selectedType);
+            typeBoxes.add(box);
+            optionPanel.add(box);
+        }
+        optionPanel.add(new JLabel("Format:"));
+        optionPanel.add(formatBox);
+
+        progressBar.setStringPainted(true);
+        exportButton.addActionListener(e -> chooseTargetAndExport());
+        closeButton.addActionListener(e -> closeOrCancel());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(exportButton);
+        buttons.add(closeButton);
+        JPanel bottom = new JPanel(new BorderLayout(5, 5));
+        bottom.add(progressBar, BorderLayout.NORTH);
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        bottom.add(buttons, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(10, 10));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(countryPanel, BorderLayout.CENTER);
+        content.add(optionPanel, BorderLayout.EAST);
+        content.add(bottom, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (worker != null) {
+                    cancelExport();
+                }
+                dispose();
+            }
+        });
+        setSize(600, 450);
+        setLocationRelativeTo(owner);
+    }
+
+    private void chooseTargetAndExport() {
+        List<String> countries = countryList.getSelectedValuesList();
+        Set<ChartType> types = EnumSet.noneOf(ChartType.class);
+        for (int i = 0; i < typeBoxes.size(); i++) {
+            if (typeBoxes.get(i).isSelected()) {
+                types.add(ChartType.values()[i]);
+            }
+        }
+        if (countries.isEmpty() || types.isEmpty()) {
+            statusLabel.setText("Select at least one country and one chart type.");
+            return;
+        }
+
+        ReportExporter.Format format = (ReportExporter.Format) formatBox.getSelectedItem();
+        JFileChooser chooser = new JFileChooser();
+        if (format == ReportExporter.Format.PDF) {
+            chooser.setSelectedFile(new File("life-expectancy-report.pdf"));
+        } else {
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setDialogTitle("Directory for the PNG pages");
+        }
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path target = chooser.getSelectedFile().toPath();
+        if (format == ReportExporter.Format.PDF && !target.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+            target = target.resolveSibling(target.getFileName() + ".pdf");
+        }
+        export(countries, types, format, target);
+    }
+
+    private void export(List<String> countries, Set<ChartType> types, ReportExporter.Format format, Path target) {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        exporter = new ReportExporter(builder, stories, sex, threads);
+        ReportExporter current = exporter;
+        int total = countries.size() * types.size();
+        progressBar.setMaximum(total);
+        progressBar.setValue(0);
+        progressBar.setString("0 / " + total);
+        statusLabel.setText("Exporting to " + target + " ...");
+        setInputsEnabled(false);
+        closeButton.setText("Cancel");
+
+        worker = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return current.export(countries, types, format, target, (pages, all) -> publish(pages));
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                int pages = chunks.get(chunks.size() - 1);
+                progressBar.setValue(pages);
+                progressBar.setString(pages + " / " + total);
+            }
+
+            @Override
+            protected void done() {
+                worker = null;
+                setInputsEnabled(true);
+                closeButton.setText("Close");
+                try {
+                    statusLabel.setText("Exported " + get() + " pages to " + target);
+                } catch (CancellationException e) {
+                    statusLabel.setText("Export cancelled");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    statusLabel.setText(cause instanceof CancellationException ? "Export cancelled" : "Export failed: " + cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void closeOrCancel() {
+        if (worker != null) {
+            cancelExport();
+        } else {
+            dispose();
+        }
+    }
+
+    private void cancelExport() {
+        exporter.cancel();
+        worker.cancel(true);
+        statusLabel.setText("Cancelling...");
+    }
+
+    private void setInputsEnabled(boolean enabled) {
+        countryList.setEnabled(enabled);
+        formatBox.setEnabled(enabled);
+        exportButton.setEnabled(enabled);
+        for (JCheckBox box : typeBoxes) {
+            box.setEnabled(enabled);
+        }
+    }
+}
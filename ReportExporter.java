@@ -0,0 +1,249 @@
+import org.jfree.chart.JFreeChart;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import javax.imageio.ImageIO;
+
+// Exports a report with one page per country x chart type: the chart with its story below it,
+// as the pages of one PDF or as numbered PNG files in a directory.
+// Pages are rendered on a fixed pool of threads and written in order by the calling thread;
+// no more than two pages per thread are rendered ahead, which bounds the memory held.
+// cancel(), from any thread, or interrupting the calling thread stops the export after the
+// page being written; a PDF is only moved into place once it is complete.
+public final class ReportExporter {
+
+    public enum Format {
+        PDF, PNG
+    }
+
+    // Told on the exporting thread after each page is written
+    public interface Listener {
+        void pageWritten(int pages, int total);
+    }
+
+    // A4 landscape, in points; PNG pages are drawn at SCALE pixels per point
+    private static final double PAGE_WIDTH = 842;
+    private static final double PAGE_HEIGHT = 595;
+    private static final double MARGIN = 36;
+    private static final double MIN_CHART_HEIGHT = 300;
+    private static final double FONT_SIZE = 11;
+    private static final double LEADING = 14;
+    private static final int SCALE = 2;
+    private static final Font STORY_FONT = new Font("SansSerif", Font.PLAIN, (int) FONT_SIZE);
+    private static final FontRenderContext FONT_CONTEXT = new FontRenderContext(null, true, true);
+
+    private final ChartBuilder builder;
+    private final StoryEngine stories;
+    private final int sex;
+    private final int threads;
+    private volatile boolean cancelled;
+
+    public ReportExporter(ChartBuilder builder, StoryEngine stories, int sex, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.builder = builder;
+        this.stories = stories;
+        this.sex = sex;
+        this.threads = threads;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Writes the pages for every country and chart type, country by country, into a PDF file or
+    // a directory of PNG files; returns the number of pages written
+    public int export(List<String> countries, Set<ChartType> types, Format format, Path target, Listener listener)
+            throws IOException, InterruptedException {
+        List<String> pageCountries = new ArrayList<>();
+        List<ChartType> pageTypes = new ArrayList<>();
+        for (String country : countries) {
+            for (ChartType type : types) {
+                pageCountries.add(country);
+                pageTypes.add(type);
+            }
+        }
+        int total = pageCountries.size();
+        long start = System.nanoTime();
+        Path partial = null;
+        OutputStream pdfOut = null;
+        PdfDocument pdf = null;
+        if (format == Format.PDF) {
+            partial = target.resolveSibling(target.getFileName() + ".part");
+            pdfOut = Files.newOutputStream(partial);
+            try {
+                pdf = new PdfDocument(pdfOut);
+            } catch (IOException e) {
+                pdfOut.close();
+                throw e;
+            }
+        } else {
+            Files.createDirectories(target);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "report-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean complete = false;
+        try {
+            ArrayDeque<Future<RenderedPage>> ahead = new ArrayDeque<>();
+            int next = 0;
+            for (int written = 0; written < total; written++) {
+                while (next < total && ahead.size() < threads * 2) {
+                    String country = pageCountries.get(next);
+                    ChartType type = pageTypes.get(next++);
+                    ahead.add(pool.submit(() -> render(country, type, format)));
+                }
+                RenderedPage page = ahead.poll().get();
+                if (cancelled || Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Export cancelled after " + written + " of " + total + " pages");
+                }
+                if (pdf != null) {
+                    pdf.add(page.pdfPage);
+                } else {
+                    Path file = target.resolve(String.format("%03d-%s-%s.png", written + 1,
+                            BatchRenderer.fileName(page.country), page.type.id()));
+                    Files.write(file, page.png);
+                }
+                if (listener != null) {
+                    listener.pageWritten(written + 1, total);
+                }
+            }
+            if (pdf != null) {
+                pdf.close();
+                pdf = null;
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            complete = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            throw new IllegalStateException("Rendering failed", cause);
+        } finally {
+            pool.shutdownNow();
+            if (!complete && partial != null) {
+                pdfOut.close();
+                Files.deleteIfExists(partial);
+            }
+        }
+        Instrumentation.record(Instrumentation.REPORT_EXPORT, start);
+        return total;
+    }
+
+    // Builds the chart and story of one page and draws them; runs on the pool
+    private RenderedPage render(String country, ChartType type, Format format) throws IOException {
+        JFreeChart chart;
+        String story;
+        Lock read = builder.getStore().lock().readLock();
+        read.lock();
+        try {
+            chart = builder.createChart(country, type, sex);
+            story = stories.story(country, type, sex);
+        } finally {
+            read.unlock();
+        }
+        List<String> lines = wrap(story, PAGE_WIDTH - 2 * MARGIN);
+        double chartWidth = PAGE_WIDTH - 2 * MARGIN;
+        // The chart gives up height to a long story, down to MIN_CHART_HEIGHT
+        double chartHeight = Math.max(MIN_CHART_HEIGHT, PAGE_HEIGHT - 2 * MARGIN - (lines.size() + 1) * LEADING);
+        DownsampledXYDataset.resample(chart, (int) chartWidth * SCALE);
+
+        if (format == Format.PNG) {
+            BufferedImage image = new BufferedImage((int) PAGE_WIDTH * SCALE, (int) PAGE_HEIGHT * SCALE, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2.scale(SCALE, SCALE);
+                g2.setColor(Color.WHITE);
+                g2.fillRect(0, 0, (int) PAGE_WIDTH, (int) PAGE_HEIGHT);
+                chart.draw(g2, new Rectangle2D.Double(MARGIN, MARGIN, chartWidth, chartHeight));
+                g2.setColor(Color.BLACK);
+                g2.setFont(STORY_FONT);
+                double y = MARGIN + chartHeight + LEADING + FONT_SIZE;
+                for (String line : lines) {
+                    g2.drawString(line, (float) MARGIN, (float) y);
+                    y += LEADING;
+                }
+            } finally {
+                g2.dispose();
+            }
+            ByteArrayOutputStream png = new ByteArrayOutputStream(256 * 1024);
+            ImageIO.write(image, "png", png);
+            return new RenderedPage(country, type, png.toByteArray(), null);
+        }
+
+        BufferedImage image = chart.createBufferedImage((int) chartWidth * SCALE, (int) chartHeight * SCALE,
+                chartWidth, chartHeight, null);
+        PdfDocument.Page page = new PdfDocument.Page(PAGE_WIDTH, PAGE_HEIGHT);
+        page.image(PdfDocument.Image.of(image), MARGIN, PAGE_HEIGHT - MARGIN - chartHeight, chartWidth, chartHeight);
+        double y = PAGE_HEIGHT - MARGIN - chartHeight - LEADING - FONT_SIZE;
+        for (String line : lines) {
+            page.text(MARGIN, y, FONT_SIZE, false, line);
+            y -= LEADING;
+        }
+        return new RenderedPage(country, type, null, page);
+    }
+
+    // Breaks the text into lines that fit the width, at spaces
+    static List<String> wrap(String text, double width) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for (String word : text.split(" +")) {
+            String candidate = line.length() == 0 ? word : line + " " + word;
+            if (line.length() > 0 && STORY_FONT.getStringBounds(candidate, FONT_CONTEXT).getWidth() > width) {
+                lines.add(line.toString());
+                line.setLength(0);
+                line.append(word);
+            } else {
+                line.setLength(0);
+                line.append(candidate);
+            }
+        }
+        if (line.length() > 0) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    // One page, encoded for its format
+    private static final class RenderedPage {
+        final String country;
+        final ChartType type;
+        final byte[] png;
+        final PdfDocument.Page pdfPage;
+
+        RenderedPage(String country, ChartType type, byte[] png, PdfDocument.Page pdfPage) {
+            this.country = country;
+            this.type = type;
+            this.png = png;
+            this.pdfPage = pdfPage;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.BitSet;
+
+// The result of a query: a set of cells of a DataStore that hold a value, kept as a bitmap
+// over their offsets ([country][metric][sex][year]), together with the countries, metrics,
+// sexes and years the query selected. Chart builders walk the selections and ask contains().
+public final class RowSet {
+
+    private final DataStore store;
+    private final long[] words;
+    private final int size;
+    private final BitSet countries;
+    private final BitSet metrics;
+    private final BitSet sexes;
+    private final BitSet years;
+
+    RowSet(DataStore store, long[] words, BitSet countries, BitSet metrics, BitSet sexes, BitSet years) {
+        this.store = store;
+        this.words = words;
+        this.countries = countries;
+        this.metrics = metrics;
+        this.sexes = sexes;
+        this.years = years;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.size = count;
+    }
+
+    public DataStore store() {
+        return store;
+    }
+
+    // Number of cells with a value
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int country, int metric, int sex, int yearIndex) {
+        int offset = store.offset(country, metric, sex, yearIndex);
+        return (words[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    // The first cell offset at or after from, or -1; for (int row = next(0); row >= 0; row = next(row + 1))
+    public int next(int from) {
+        int index = from >>> 6;
+        if (index >= words.length) {
+            return -1;
+        }
+        long word = words[index] & (-1L << from);
+        while (word == 0) {
+            if (++index == words.length) {
+                return -1;
+            }
+            word = words[index];
+        }
+        return index * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    // Number of countries with at least one cell in the set
+    public int countriesWithRows() {
+        int cellsPerCountry = store.metricCount() * store.sexCount() * store.yearCount();
+        int count = 0;
+        for (int row = next(0); row >= 0; row = next((row / cellsPerCountry + 1) * cellsPerCountry)) {
+            count++;
+        }
+        return count;
+    }
+
+    // The selected countries, metrics, sexes and year indexes; copies, so callers may modify them
+    public BitSet countries() {
+        return (BitSet) countries.clone();
+    }
+
+    public BitSet metrics() {
+        return (BitSet) metrics.clone();
+    }
+
+    public BitSet sexes() {
+        return (BitSet) sexes.clone();
+    }
+
+    public BitSet years() {
+        return (BitSet) years.clone();
+    }
+
+    // The sex a chart of these rows shows: the store's default when selected, else the first selected
+    public int chartSex() {
+        return sexes.get(store.defaultSex()) ? store.defaultSex() : Math.max(sexes.nextSetBit(0), 0);
+    }
+
+    @Override
+    public String toString() {
+        return size + " rows: " + countries.cardinality() + " countries, " + metrics.cardinality() + " metrics, "
+                + sexes.cardinality() + " sexes, " + years.cardinality() + " years";
+    }
+}
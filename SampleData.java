@@ -0,0 +1,107 @@
+import java.util.Random;
+
+// The built-in sample dataset, used when the dashboard is started without a data file,
+// and generated datasets of any size for benchmarks and load tests
+public final class SampleData {
+
+    // Sample data
+    private static final String[] COUNTRIES = {"Australia", "China", "India", "United States of America"};
+    private static final int YEAR = 2019;
+    private static final String[] SEXES = {DataStore.BOTH_SEXES, DataStore.MALE, DataStore.FEMALE};
+    private static final String[] METRICS = {"Life Expectancy at Birth", "Life Expectancy at Age 60", "HALE at Birth", "HALE at Age 60"};
+    private static final String[] REGIONS = {"Western Pacific", "Western Pacific", "South-East Asia", "Americas"};
+    private static final String[] INCOME_GROUPS = {"High income", "Upper middle income", "Lower middle income", "High income"};
+
+    // Regions handed out in turn to synthetic countries, income groups by life expectancy level
+    private static final String[] SYNTHETIC_REGIONS = {"Africa", "Americas", "South-East Asia", "Europe", "Eastern Mediterranean", "Western Pacific"};
+    private static final String[] SYNTHETIC_INCOME_GROUPS = {"Low income", "Lower middle income", "Upper middle income", "High income"};
+
+    // Life expectancy and HALE in YEAR, as [country][metric][sex]
+    private static final double[][][] LIFE_EXPECTANCY = {
+            // Australia
+            {
+                    {81.9, 80.4, 79.8}, // Life Expectancy at Birth (Both sexes, Male, Female)
+                    {24.7, 23.3, 26.1}, // Life Expectancy at Age 60 (Both sexes, Male, Female)
+                    {70.2, 69.2, 71.2}, // HALE at Birth (Both sexes, Male, Female)
+                    {18.4, 17.5, 19.3}  // HALE at Age 60 (Both sexes, Male, Female)
+            },
+            // China
+            {
+                    {74.9, 73.9, 72.3},
+                    {19.6, 17.9, 21.5},
+                    {66.7, 65.3, 68.2},
+                    {14.9, 14.0, 15.9}
+            },
+            // India
+            {
+                    {67.2, 65.7, 68.9},
+                    {18.0, 16.9, 19.0},
+                    {57.3, 57.0, 57.6},
+                    {12.6, 12.1, 13.0}
+            },
+            // United States of America
+            {
+                    {78.6, 76.3, 80.8},
+                    {23.0, 21.5, 24.2},
+                    {66.7, 65.7, 67.7},
+                    {16.5, 15.6, 17.2}
+            }
+    };
+
+    private SampleData() {
+    }
+
+    public static DataStore load() {
+        DataStore.Builder builder = new DataStore.Builder();
+        for (int i = 0; i < COUNTRIES.length; i++) {
+            builder.setRegion(COUNTRIES[i], REGIONS[i]);
+            builder.setIncomeGroup(COUNTRIES[i], INCOME_GROUPS[i]);
+            for (int j = 0; j < METRICS.length; j++) {
+                for (int k = 0; k < SEXES.length; k++) {
+                    builder.add(COUNTRIES[i], METRICS[j], SEXES[k], YEAR, LIFE_EXPECTANCY[i][j][k]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Plausible made-up data: the sample metrics for the given number of countries and
+    // consecutive years from 2000, each country with its own level and yearly trend, for both
+    // sexes together and for men and women, who live a few years less and more respectively.
+    // The same seed always gives the same data.
+    public static DataStore synthetic(int countries, int years, long seed) {
+        Random random = new Random(seed);
+        DataStore.Builder builder = new DataStore.Builder();
+        int[] sexes = new int[SEXES.length];
+        for (int s = 0; s < SEXES.length; s++) {
+            sexes[s] = builder.sexes().encode(SEXES[s]);
+        }
+        int[] metrics = new int[METRICS.length];
+        for (int m = 0; m < METRICS.length; m++) {
+            metrics[m] = builder.metrics().encode(METRICS[m]);
+        }
+        for (int c = 0; c < countries; c++) {
+            int country = builder.countries().encode(String.format("Country %03d", c + 1));
+            builder.setRegion(country, builder.regions().encode(SYNTHETIC_REGIONS[c % SYNTHETIC_REGIONS.length]));
+
+            // Life expectancy at birth sets the level; the other metrics follow it like in the sample
+            double birth = 55 + random.nextDouble() * 30;
+            double trend = random.nextGaussian() * 0.25 + 0.2;
+            double femaleAdvantage = 3 + random.nextDouble() * 4;
+            int incomeGroup = (int) ((birth - 55) / 30 * SYNTHETIC_INCOME_GROUPS.length);
+            builder.setIncomeGroup(country, builder.incomeGroups().encode(SYNTHETIC_INCOME_GROUPS[incomeGroup]));
+            for (int y = 0; y < years; y++) {
+                double both = birth + trend * y + random.nextGaussian() * 0.3;
+                double[] bySex = {both, both - femaleAdvantage / 2, both + femaleAdvantage / 2};
+                for (int s = 0; s < SEXES.length; s++) {
+                    double lifeExpectancy = bySex[s];
+                    double[] values = {lifeExpectancy, lifeExpectancy * 0.29, lifeExpectancy * 0.87, lifeExpectancy * 0.22};
+                    for (int m = 0; m < METRICS.length; m++) {
+                        builder.add(country, metrics[m], sexes[s], 2000 + y, Math.round(values[m] * 10) / 10.0);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+// Compact binary snapshot of a DataStore, opened with FileChannel.map so that
+// startup does not have to parse the data again or copy the values onto the heap.
+//
+// Layout (little endian):
+//   header   magic, version, country/metric/sex/year/region/income group counts,
+//            then the offset of each section (dictionary, years, values)
+//   dictionary  countries, metrics, sexes, regions and income groups as (int length, UTF-8 bytes)
+//   years    one int per year, then the region code and the income group code of each
+//            country (-1 for none)
+//   values   fixed-width doubles in DataStore order, 8-byte aligned
+//
+// Only the header, dictionary and years are read eagerly; the value column is
+// served straight from the mapping. Writable files are mapped private (copy-on-write),
+// so in-place updates made through DataStore.setValue never reach the file.
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x4C454453; // "LEDS"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 4 * 8 + 8 * 3;
+
+    private SnapshotFile() {
+    }
+
+    public static void write(DataStore store, Path path) throws IOException {
+        byte[][] countries = encode(store.countryCount(), store::countryName);
+        byte[][] metrics = encode(store.metricCount(), store::metricName);
+        byte[][] sexes = encode(store.sexCount(), store::sexName);
+        byte[][] regions = encode(store.regionCount(), store::regionName);
+        byte[][] incomeGroups = encode(store.incomeGroupCount(), store::incomeGroupName);
+
+        long dictionaryOffset = HEADER_SIZE;
+        long yearsOffset = dictionaryOffset + size(countries) + size(metrics) + size(sexes) + size(regions)
+                + size(incomeGroups);
+        long valuesOffset = align(yearsOffset + 4L * store.yearCount() + 8L * store.countryCount());
+        long fileSize = valuesOffset + 8L * store.cellCount();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException(path + ": snapshot larger than 2 GB is not supported");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Header index
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(store.countryCount());
+            buffer.putInt(store.metricCount());
+            buffer.putInt(store.sexCount());
+            buffer.putInt(store.yearCount());
+            buffer.putInt(store.regionCount());
+            buffer.putInt(store.incomeGroupCount());
+            buffer.putLong(dictionaryOffset);
+            buffer.putLong(yearsOffset);
+            buffer.putLong(valuesOffset);
+
+            // String dictionary
+            put(buffer, countries);
+            put(buffer, metrics);
+            put(buffer, sexes);
+            put(buffer, regions);
+            put(buffer, incomeGroups);
+
+            // Year axis
+            for (int i = 0; i < store.yearCount(); i++) {
+                buffer.putInt(store.year(i));
+            }
+            for (int i = 0; i < store.countryCount(); i++) {
+                buffer.putInt(store.countryRegion(i));
+            }
+            for (int i = 0; i < store.countryCount(); i++) {
+                buffer.putInt(store.countryIncomeGroup(i));
+            }
+
+            // Value column
+            buffer.position((int) valuesOffset);
+            buffer.asDoubleBuffer().put(store.values());
+            buffer.force();
+        }
+    }
+
+    public static DataStore open(Path path) throws IOException {
+        boolean writable = Files.isWritable(path);
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException(path + ": snapshot larger than 2 GB is not supported");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(
+                    writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (fileSize < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException(path + ": not a dashboard snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + ": unsupported snapshot version " + version);
+            }
+            int countryCount = buffer.getInt();
+            int metricCount = buffer.getInt();
+            int sexCount = buffer.getInt();
+            int yearCount = buffer.getInt();
+            int regionCount = buffer.getInt();
+            int incomeGroupCount = buffer.getInt();
+            long dictionaryOffset = buffer.getLong();
+            long yearsOffset = buffer.getLong();
+            long valuesOffset = buffer.getLong();
+
+            long cells = (long) countryCount * metricCount * sexCount * yearCount;
+            if (valuesOffset + 8 * cells != fileSize) {
+                throw new IOException(path + ": snapshot is truncated or corrupt");
+            }
+
+            buffer.position((int) dictionaryOffset);
+            String[] countries = get(buffer, countryCount);
+            String[] metrics = get(buffer, metricCount);
+            String[] sexes = get(buffer, sexCount);
+            String[] regions = get(buffer, regionCount);
+            String[] incomeGroups = get(buffer, incomeGroupCount);
+
+            buffer.position((int) yearsOffset);
+            int[] years = new int[yearCount];
+            for (int i = 0; i < yearCount; i++) {
+                years[i] = buffer.getInt();
+            }
+            int[] countryRegions = new int[countryCount];
+            for (int i = 0; i < countryCount; i++) {
+                countryRegions[i] = buffer.getInt();
+            }
+            int[] countryIncomeGroups = new int[countryCount];
+            for (int i = 0; i < countryCount; i++) {
+                countryIncomeGroups[i] = buffer.getInt();
+            }
+
+            buffer.position((int) valuesOffset);
+            DoubleBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            return new DataStore(countries, metrics, sexes, years, values, regions, countryRegions,
+                    incomeGroups, countryIncomeGroups);
+        }
+    }
+
+    private static byte[][] encode(int count, IntFunction<String> names) {
+        byte[][] encoded = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            encoded[i] = names.apply(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static long size(byte[][] strings) {
+        long size = 0;
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+        return size;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void put(ByteBuffer buffer, byte[][] strings) {
+        for (byte[] string : strings) {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+    }
+
+    private static String[] get(ByteBuffer buffer, int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Converts a CSV/TSV export, or the built-in sample data when no input is given, into a snapshot
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java SnapshotFile <output.snap> [input.csv]");
+            System.exit(2);
+        }
+        Path output = Paths.get(args[0]);
+        long start = System.nanoTime();
+        DataStore store = args.length == 2 ? CsvLoader.load(Paths.get(args[1])) : SampleData.load();
+        long loaded = System.nanoTime();
+        write(store, output);
+        long written = System.nanoTime();
+
+        System.out.printf("Loaded %d countries, %d metrics, %d sexes, %d years in %d ms%n",
+                store.countryCount(), store.metricCount(), store.sexCount(), store.yearCount(),
+                (loaded - start) / 1_000_000);
+        System.out.printf("Wrote %s in %d ms%n", output, (written - loaded) / 1_000_000);
+    }
+}
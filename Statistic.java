@@ -0,0 +1,4 @@
+// Rollup statistics kept by AggregateCube for each group, metric, sex and year
+public enum Statistic {
+    MEAN, MIN, MAX, P25, MEDIAN, P75, COUNT
+}
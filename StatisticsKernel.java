@@ -0,0 +1,77 @@
+// Sums over paired primitive arrays, the inner loop of CompareAnalysis.
+// One pass gives every sum needed for means, variances, the correlation, a least-squares
+// line and the mean gap ratio (x - y) / x. get() returns the jdk.incubator.vector
+// implementation when the module is present (java --add-modules jdk.incubator.vector ...)
+// and a plain scalar loop otherwise; -Ddashboard.scalarKernel=true forces the scalar one.
+public abstract class StatisticsKernel {
+
+    // Indexes into the sums array
+    public static final int SUM_X = 0;
+    public static final int SUM_Y = 1;
+    public static final int SUM_XX = 2;
+    public static final int SUM_YY = 3;
+    public static final int SUM_XY = 4;
+    public static final int SUM_GAP_RATIO = 5;
+    public static final int SUMS = 6;
+
+    private static final StatisticsKernel INSTANCE = load();
+
+    public static StatisticsKernel get() {
+        return INSTANCE;
+    }
+
+    public static StatisticsKernel scalar() {
+        return new Scalar();
+    }
+
+    // Adds the sums over x[0..length) and y[0..length) to sums; x must not contain 0
+    public abstract void accumulate(double[] x, double[] y, int length, double[] sums);
+
+    public abstract String name();
+
+    private static StatisticsKernel load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && !Boolean.getBoolean("dashboard.scalarKernel")) {
+            try {
+                // Loaded by name, so nothing links against the incubator module unless it is there
+                return (StatisticsKernel) Class.forName("VectorStatisticsKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector statistics kernel unavailable, using the scalar one: " + e);
+            }
+        }
+        return new Scalar();
+    }
+
+    private static final class Scalar extends StatisticsKernel {
+
+        @Override
+        public void accumulate(double[] x, double[] y, int length, double[] sums) {
+            double sumX = 0;
+            double sumY = 0;
+            double sumXX = 0;
+            double sumYY = 0;
+            double sumXY = 0;
+            double sumRatio = 0;
+            for (int i = 0; i < length; i++) {
+                double xi = x[i];
+                double yi = y[i];
+                sumX += xi;
+                sumY += yi;
+                sumXX += xi * xi;
+                sumYY += yi * yi;
+                sumXY += xi * yi;
+                sumRatio += (xi - yi) / xi;
+            }
+            sums[SUM_X] += sumX;
+            sums[SUM_Y] += sumY;
+            sums[SUM_XX] += sumXX;
+            sums[SUM_YY] += sumYY;
+            sums[SUM_XY] += sumXY;
+            sums[SUM_GAP_RATIO] += sumRatio;
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,587 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Writes the story shown next to each chart from the data itself: how each measure
+// changed between the first and last year, where a country ranks and which country
+// or measure moved the most.
+// Templates are compiled once; the facts are computed on first use and the text is
+// cached per (country, chart type, data version), so switching charts stays cheap
+// for any number of countries.
+public final class StoryEngine {
+
+    private static final long CACHE_MAX_CHARS = 4_000_000;
+
+    private static final Template CHANGE = Template.compile(
+            "{metric} {direction} from {first} in {firstYear} to {last} in {lastYear}.");
+    private static final Template LEVEL = Template.compile("{metric} is {last} in {lastYear}.");
+    private static final Template AVERAGE_CHANGE = Template.compile(
+            "The average {metric} {direction} from {first} to {last}.");
+    private static final Template RANK = Template.compile(
+            "In {year}, {country} ranks {rank} of {countryCount} countries for {metric}.");
+    private static final Template LEADERS = Template.compile(
+            "In {year}, {top} has the highest {metric} ({topValue}) and {bottom} the lowest ({bottomValue}).");
+
+    private static final Template COMPARE = Template.compile(
+            "The comparison plots life expectancy against healthy life expectancy for {scope}. {pairs}{countryGap}");
+    private static final Template COMPARE_PAIR = Template.compile(
+            "Across {points} country-years, {life} and {hale} correlate at r = {correlation}, and each extra year of {life} "
+                    + "comes with {slope} years of {hale}. On average {gap} years, {ratio}% of life, are lived in less than full health.");
+    private static final Template COUNTRY_GAP = Template.compile(
+            "In {year}, {country} spends {gap} years ({ratio}%) of its {life} in less than full health.");
+
+    private static final Template DRILL_DOWN = Template.compile(
+            "The pie chart opens {slice}: {entries} entries, of which {largest} is the largest with {largestValue}.{folded}");
+
+    private static final Template PLAYBACK = Template.compile(
+            "{chart} steps through the years from {firstYear} to {lastYear}, one year per frame.");
+
+    private static final Map<ChartType, Template> COUNTRY_TEMPLATES = new EnumMap<>(ChartType.class);
+    private static final Map<ChartType, Template> ALL_COUNTRIES_TEMPLATES = new EnumMap<>(ChartType.class);
+    private static final Map<ChartType, Template> GROUP_TEMPLATES = new EnumMap<>(ChartType.class);
+
+    static {
+        COUNTRY_TEMPLATES.put(ChartType.BAR, Template.compile(
+                "The bar chart for {country} compares {metrics} {eachYear}. {changes}{rank}"));
+        COUNTRY_TEMPLATES.put(ChartType.LINE, Template.compile(
+                "The line chart for {country} follows each measure {years}. {changes}{mover}{rank}"));
+        COUNTRY_TEMPLATES.put(ChartType.PIE, Template.compile(
+                "The pie chart for {country} shows the measures for {pieYear}. {pieLargest}{pieValues}"));
+        COUNTRY_TEMPLATES.put(ChartType.SCATTER, Template.compile(
+                "The scatter plot for {country} places each measure against the year. {changes}{rank}"));
+
+        ALL_COUNTRIES_TEMPLATES.put(ChartType.BAR, Template.compile(
+                "The bar chart shows the average of each measure across {countryCount} countries {years}. {averageChanges}{leaders}"));
+        ALL_COUNTRIES_TEMPLATES.put(ChartType.LINE, Template.compile(
+                "The line chart tracks the average, lowest and highest value of each measure across {countryCount} countries. {averageChanges}{spread}{moverCountry}"));
+        ALL_COUNTRIES_TEMPLATES.put(ChartType.PIE, Template.compile(
+                "{pieSummary}"));
+        ALL_COUNTRIES_TEMPLATES.put(ChartType.SCATTER, Template.compile(
+                "The scatter plot places the measures of all {countryCount} countries against the year. {leaders}{moverCountry}"));
+
+        GROUP_TEMPLATES.put(ChartType.BAR, Template.compile(
+                "The bar chart shows the average of each measure across the {countryCount} countries in {group} {years}. {averageChanges}{leaders}"));
+        GROUP_TEMPLATES.put(ChartType.LINE, Template.compile(
+                "The line chart tracks the average, lowest and highest value of each measure across the {countryCount} countries in {group}. {averageChanges}"));
+        GROUP_TEMPLATES.put(ChartType.PIE, Template.compile(
+                "The pie chart compares the average of each measure across the {countryCount} countries in {group} in {lastYear}."));
+        GROUP_TEMPLATES.put(ChartType.SCATTER, Template.compile(
+                "The scatter plot places the measures of the {countryCount} countries in {group} against the year. {leaders}"));
+    }
+
+    private final DataStore store;
+    private final AggregateCube aggregates;
+    private final Indicator indicator;
+    private final ChartCache<String> cache = new ChartCache<>(CACHE_MAX_CHARS, String::length);
+
+    public StoryEngine(DataStore store, AggregateCube aggregates) {
+        this(store, aggregates, Indicator.LIFE_EXPECTANCY);
+    }
+
+    // Values are told in the indicator's unit
+    public StoryEngine(DataStore store, AggregateCube aggregates, Indicator indicator) {
+        this.store = store;
+        this.aggregates = aggregates;
+        this.indicator = indicator;
+    }
+
+    // Story for one country or for ChartBuilder.ALL_COUNTRIES
+    public String story(String country, ChartType type) {
+        return story(country, type, store.defaultSex());
+    }
+
+    // The same told for one sex of the store
+    public String story(String country, ChartType type, int sex) {
+        ChartCache.Key key = new ChartCache.Key(country, type.id(), store.sexName(sex), store.version());
+        String story = cache.get(key);
+        if (story == null) {
+            story = write(country, type, sex);
+            if (sex != store.defaultSex()) {
+                story += " Values are for " + store.sexName(sex).toLowerCase(Locale.ROOT) + ".";
+            }
+            cache.put(key, story);
+        }
+        return story;
+    }
+
+    // Story for the rows of a query, e.g. a region or income group named by label
+    public String story(String label, RowSet rows, ChartType type) {
+        ChartCache.Key key = new ChartCache.Key(label, type.id(), rows + ", " + store.sexName(rows.chartSex()), store.version());
+        String story = cache.get(key);
+        if (story == null) {
+            if (rows.isEmpty()) {
+                story = "No data for " + label + ".";
+            } else if (type == ChartType.COMPARE) {
+                story = compareStory("the countries in " + label, rows.countries(), rows.years(), rows.chartSex(), -1);
+            } else {
+                story = GROUP_TEMPLATES.get(type).render(groupFacts(label, rows));
+            }
+            cache.put(key, story);
+        }
+        return story;
+    }
+
+    // Story for a pie opened from one slice of another by ChartBuilder.drillDown; not cached,
+    // since the pie is only shown until the user goes back up
+    public String drillDownStory(String slice, FoldedPieDataset pie) {
+        Map<String, String> facts = new HashMap<>();
+        facts.put("slice", slice);
+        facts.put("entries", String.valueOf(pie.entryCount()));
+        // Slices are in descending order, so the first is the largest entry
+        facts.put("largest", String.valueOf(pie.getKey(0)));
+        facts.put("largestValue", amount(pie.getValue(0).doubleValue()));
+        facts.put("folded", pie.foldedCount() == 0 ? "" : " The smallest " + pie.foldedCount()
+                + " share the last slice; click it to open them.");
+        return DRILL_DOWN.render(facts);
+    }
+
+    // Story for a chart made by ChartBuilder.createPlaybackChart
+    public String playbackStory(String country, ChartType type) {
+        Map<String, String> facts = new HashMap<>();
+        boolean allCountries = country.equals(ChartBuilder.ALL_COUNTRIES);
+        if (type == ChartType.SCATTER) {
+            int[] metrics = PlaybackChart.pointMetrics(store);
+            facts.put("chart", "The scatter plot of each country's " + store.metricName(metrics[0]) + " against its "
+                    + store.metricName(metrics[1]) + (allCountries ? "" : ", with " + country + " highlighted,"));
+        } else {
+            facts.put("chart", allCountries ? "The bar chart of the averages across " + store.countryCount() + " countries"
+                    : "The bar chart for " + country);
+        }
+        facts.put("firstYear", String.valueOf(store.year(0)));
+        facts.put("lastYear", String.valueOf(store.year(store.yearCount() - 1)));
+        return PLAYBACK.render(facts);
+    }
+
+    public ChartCache<String> getCache() {
+        return cache;
+    }
+
+    private String write(String country, ChartType type, int sex) {
+        if (type == ChartType.COMPARE) {
+            BitSet all = new BitSet();
+            all.set(0, store.countryCount());
+            BitSet years = new BitSet();
+            years.set(0, store.yearCount());
+            return compareStory("every country and year", all, years, sex, store.countryIndex(country));
+        }
+        if (country.equals(ChartBuilder.ALL_COUNTRIES)) {
+            return ALL_COUNTRIES_TEMPLATES.get(type).render(allCountriesFacts(sex));
+        }
+        int countryIndex = store.countryIndex(country);
+        if (countryIndex < 0) {
+            return "No story available for this country.";
+        }
+        return COUNTRY_TEMPLATES.get(type).render(countryFacts(countryIndex, sex));
+    }
+
+    private Map<String, String> countryFacts(int country, int sex) {
+        Map<String, String> facts = new HashMap<>();
+        int lastYear = store.yearCount() - 1;
+        facts.put("country", store.countryName(country));
+        facts.put("years", years(0, lastYear));
+        facts.put("eachYear", lastYear == 0 ? years(0, lastYear) : "for each year " + years(0, lastYear));
+        facts.put("metrics", metricList());
+
+        // Change of each measure between its first and last reported year
+        StringBuilder changes = new StringBuilder();
+        int moverMetric = -1;
+        double moverDelta = 0;
+        for (int m = 0; m < store.metricCount(); m++) {
+            int first = firstYearWithValue(country, m, sex);
+            int last = lastYearWithValue(country, m, sex);
+            if (first < 0) {
+                continue;
+            }
+            double from = store.value(country, m, sex, first);
+            double to = store.value(country, m, sex, last);
+            Map<String, String> change = new HashMap<>();
+            change.put("metric", store.metricName(m));
+            change.put("direction", direction(to - from));
+            change.put("first", amount(from));
+            change.put("firstYear", String.valueOf(store.year(first)));
+            change.put("last", amount(to));
+            change.put("lastYear", String.valueOf(store.year(last)));
+            changes.append((first == last ? LEVEL : CHANGE).render(change)).append(' ');
+            if (first != last && Math.abs(to - from) > Math.abs(moverDelta)) {
+                moverMetric = m;
+                moverDelta = to - from;
+            }
+        }
+        facts.put("changes", changes.toString());
+        facts.put("mover", moverMetric < 0 ? "" : "The biggest change is in " + store.metricName(moverMetric)
+                + ", which " + direction(moverDelta) + " by " + amount(Math.abs(moverDelta)) + ". ");
+
+        // Rank for the first measure in the latest year, counting only countries with a value
+        double value = store.value(country, 0, sex, lastYear);
+        if (store.countryCount() > 1 && !Double.isNaN(value)) {
+            int rank = 1;
+            int reported = 0;
+            for (int c = 0; c < store.countryCount(); c++) {
+                double other = store.value(c, 0, sex, lastYear);
+                if (!Double.isNaN(other)) {
+                    reported++;
+                    if (other > value) {
+                        rank++;
+                    }
+                }
+            }
+            Map<String, String> rankFacts = new HashMap<>();
+            rankFacts.put("year", String.valueOf(store.year(lastYear)));
+            rankFacts.put("country", store.countryName(country));
+            rankFacts.put("rank", ordinal(rank));
+            rankFacts.put("countryCount", String.valueOf(reported));
+            rankFacts.put("metric", store.metricName(0));
+            facts.put("rank", RANK.render(rankFacts));
+        } else {
+            facts.put("rank", "");
+        }
+
+        // The country pie chart shows the first year
+        facts.put("pieYear", String.valueOf(store.year(0)));
+        int largest = -1;
+        List<String> pieValues = new ArrayList<>();
+        for (int m = 0; m < store.metricCount(); m++) {
+            double pieValue = store.value(country, m, sex, 0);
+            if (Double.isNaN(pieValue)) {
+                continue;
+            }
+            pieValues.add(store.metricName(m) + " is " + amount(pieValue));
+            if (largest < 0 || pieValue > store.value(country, largest, sex, 0)) {
+                largest = m;
+            }
+        }
+        facts.put("pieLargest", largest < 0 ? "" : "The largest share is " + store.metricName(largest) + ". ");
+        facts.put("pieValues", pieValues.isEmpty() ? "" : join(pieValues) + ".");
+        return facts;
+    }
+
+    private Map<String, String> allCountriesFacts(int sex) {
+        Map<String, String> facts = new HashMap<>();
+        int lastYear = store.yearCount() - 1;
+        facts.put("countryCount", String.valueOf(store.countryCount()));
+        facts.put("years", years(0, lastYear));
+
+        StringBuilder averageChanges = new StringBuilder();
+        for (int m = 0; m < store.metricCount(); m++) {
+            double from = aggregates.global(Statistic.MEAN, m, sex, 0);
+            double to = aggregates.global(Statistic.MEAN, m, sex, lastYear);
+            if (Double.isNaN(from) || Double.isNaN(to) || lastYear == 0) {
+                continue;
+            }
+            Map<String, String> change = new HashMap<>();
+            change.put("metric", store.metricName(m));
+            change.put("direction", direction(to - from));
+            change.put("first", format(from));
+            change.put("last", amount(to));
+            averageChanges.append(AVERAGE_CHANGE.render(change)).append(' ');
+        }
+        facts.put("averageChanges", averageChanges.toString());
+
+        // Highest and lowest country for the first measure in the latest year
+        int top = -1;
+        int bottom = -1;
+        for (int c = 0; c < store.countryCount(); c++) {
+            double value = store.value(c, 0, sex, lastYear);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            if (top < 0 || value > store.value(top, 0, sex, lastYear)) {
+                top = c;
+            }
+            if (bottom < 0 || value < store.value(bottom, 0, sex, lastYear)) {
+                bottom = c;
+            }
+        }
+        if (top >= 0 && top != bottom) {
+            Map<String, String> leaders = new HashMap<>();
+            leaders.put("year", String.valueOf(store.year(lastYear)));
+            leaders.put("metric", store.metricName(0));
+            leaders.put("top", store.countryName(top));
+            leaders.put("topValue", amount(store.value(top, 0, sex, lastYear)));
+            leaders.put("bottom", store.countryName(bottom));
+            leaders.put("bottomValue", amount(store.value(bottom, 0, sex, lastYear)));
+            facts.put("leaders", LEADERS.render(leaders) + " ");
+        } else {
+            facts.put("leaders", "");
+        }
+
+        double spreadFirst = aggregates.global(Statistic.MAX, 0, sex, 0) - aggregates.global(Statistic.MIN, 0, sex, 0);
+        double spreadLast = aggregates.global(Statistic.MAX, 0, sex, lastYear) - aggregates.global(Statistic.MIN, 0, sex, lastYear);
+        facts.put("spread", Double.isNaN(spreadFirst) || Double.isNaN(spreadLast) || store.yearCount() < 2 ? ""
+                : "The gap between the highest and lowest " + store.metricName(0) + " " + (spreadLast < spreadFirst ? "narrowed" : "widened")
+                + " from " + amount(spreadFirst) + " in " + store.year(0) + " to " + amount(spreadLast)
+                + " in " + store.year(lastYear) + ". ");
+
+        // Country whose first measure changed the most over its reported years
+        int mover = -1;
+        double moverDelta = 0;
+        for (int c = 0; c < store.countryCount(); c++) {
+            int first = firstYearWithValue(c, 0, sex);
+            int last = lastYearWithValue(c, 0, sex);
+            if (first < 0 || first == last) {
+                continue;
+            }
+            double delta = store.value(c, 0, sex, last) - store.value(c, 0, sex, first);
+            if (Math.abs(delta) > Math.abs(moverDelta)) {
+                mover = c;
+                moverDelta = delta;
+            }
+        }
+        facts.put("moverCountry", mover < 0 ? "" : store.countryName(mover) + " moved the most: its " + store.metricName(0)
+                + " " + direction(moverDelta) + " by " + amount(Math.abs(moverDelta)) + ".");
+
+        // The All Countries pie chart shows regional means, or the measure means without regions
+        StringBuilder pie = new StringBuilder();
+        if (store.regionCount() > 0) {
+            pie.append("The pie chart compares the average ").append(store.metricName(0))
+                    .append(" of each region in ").append(store.year(lastYear)).append(". ");
+            int topRegion = -1;
+            for (int r = 0; r < store.regionCount(); r++) {
+                double value = aggregates.region(r, Statistic.MEAN, 0, sex, lastYear);
+                if (!Double.isNaN(value) && (topRegion < 0 || value > aggregates.region(topRegion, Statistic.MEAN, 0, sex, lastYear))) {
+                    topRegion = r;
+                }
+            }
+            if (topRegion >= 0) {
+                pie.append(store.regionName(topRegion)).append(" leads with ")
+                        .append(amount(aggregates.region(topRegion, Statistic.MEAN, 0, sex, lastYear))).append(".");
+            }
+        } else {
+            pie.append("The pie chart compares the average of each measure across ").append(store.countryCount())
+                    .append(" countries in ").append(store.year(lastYear)).append(".");
+        }
+        facts.put("pieSummary", pie.toString());
+        return facts;
+    }
+
+    private Map<String, String> groupFacts(String label, RowSet rows) {
+        Map<String, String> facts = new HashMap<>();
+        int sex = rows.chartSex();
+        BitSet countries = rows.countries();
+        BitSet metrics = rows.metrics();
+        BitSet years = rows.years();
+        int firstYear = years.nextSetBit(0);
+        int lastYear = years.length() - 1;
+        facts.put("group", label);
+        facts.put("countryCount", String.valueOf(rows.countriesWithRows()));
+        facts.put("years", years(firstYear, lastYear));
+        facts.put("lastYear", String.valueOf(store.year(lastYear)));
+
+        // Mean of each measure over the countries reporting it, in the first and last selected year
+        StringBuilder averageChanges = new StringBuilder();
+        for (int m = metrics.nextSetBit(0); m >= 0; m = metrics.nextSetBit(m + 1)) {
+            double from = mean(rows, countries, m, sex, firstYear);
+            double to = mean(rows, countries, m, sex, lastYear);
+            if (Double.isNaN(from) || Double.isNaN(to) || firstYear == lastYear) {
+                continue;
+            }
+            Map<String, String> change = new HashMap<>();
+            change.put("metric", store.metricName(m));
+            change.put("direction", direction(to - from));
+            change.put("first", format(from));
+            change.put("last", amount(to));
+            averageChanges.append(AVERAGE_CHANGE.render(change)).append(' ');
+        }
+        facts.put("averageChanges", averageChanges.toString());
+
+        // Highest and lowest country for the first selected measure in the last selected year
+        int metric = metrics.nextSetBit(0);
+        int top = -1;
+        int bottom = -1;
+        for (int c = countries.nextSetBit(0); c >= 0 && metric >= 0; c = countries.nextSetBit(c + 1)) {
+            if (!rows.contains(c, metric, sex, lastYear)) {
+                continue;
+            }
+            double value = store.value(c, metric, sex, lastYear);
+            if (top < 0 || value > store.value(top, metric, sex, lastYear)) {
+                top = c;
+            }
+            if (bottom < 0 || value < store.value(bottom, metric, sex, lastYear)) {
+                bottom = c;
+            }
+        }
+        if (top >= 0 && top != bottom) {
+            Map<String, String> leaders = new HashMap<>();
+            leaders.put("year", String.valueOf(store.year(lastYear)));
+            leaders.put("metric", store.metricName(metric));
+            leaders.put("top", store.countryName(top));
+            leaders.put("topValue", amount(store.value(top, metric, sex, lastYear)));
+            leaders.put("bottom", store.countryName(bottom));
+            leaders.put("bottomValue", amount(store.value(bottom, metric, sex, lastYear)));
+            facts.put("leaders", LEADERS.render(leaders));
+        } else {
+            facts.put("leaders", "");
+        }
+        return facts;
+    }
+
+    // Correlation, slope and ill-health gap of each metric pair; highlight is a country or -1
+    private String compareStory(String scope, BitSet countries, BitSet years, int sex, int highlight) {
+        List<CompareAnalysis.Result> results = CompareAnalysis.compute(store, countries, years, sex);
+        if (results.isEmpty()) {
+            return "The data has no life expectancy and HALE metrics for the same age to compare.";
+        }
+        Map<String, String> facts = new HashMap<>();
+        facts.put("scope", scope);
+        StringBuilder pairs = new StringBuilder();
+        for (CompareAnalysis.Result result : results) {
+            Map<String, String> pair = new HashMap<>();
+            pair.put("points", String.valueOf(result.count));
+            pair.put("life", store.metricName(result.lifeMetric));
+            pair.put("hale", store.metricName(result.haleMetric));
+            pair.put("correlation", String.format(Locale.ROOT, "%.2f", result.correlation));
+            pair.put("slope", String.format(Locale.ROOT, "%.2f", result.slope));
+            pair.put("gap", format(result.meanGap));
+            pair.put("ratio", format(result.gapRatio * 100));
+            pairs.append(pairs.length() == 0 ? "" : " ").append(COMPARE_PAIR.render(pair));
+        }
+        facts.put("pairs", pairs.toString());
+
+        // The highlighted country's latest point of the first pair
+        facts.put("countryGap", "");
+        CompareAnalysis.Result first = results.get(0);
+        for (int i = first.count - 1; i >= 0 && highlight >= 0; i--) {
+            if (first.countries[i] == highlight) {
+                Map<String, String> gap = new HashMap<>();
+                gap.put("year", String.valueOf(store.year(first.years[i])));
+                gap.put("country", store.countryName(highlight));
+                gap.put("gap", format(first.life[i] - first.hale[i]));
+                gap.put("ratio", format((first.life[i] - first.hale[i]) / first.life[i] * 100));
+                gap.put("life", store.metricName(first.lifeMetric));
+                facts.put("countryGap", " " + COUNTRY_GAP.render(gap));
+                break;
+            }
+        }
+        return COMPARE.render(facts);
+    }
+
+    private double mean(RowSet rows, BitSet countries, int metric, int sex, int yearIndex) {
+        double sum = 0;
+        int count = 0;
+        for (int c = countries.nextSetBit(0); c >= 0; c = countries.nextSetBit(c + 1)) {
+            if (rows.contains(c, metric, sex, yearIndex)) {
+                sum += store.value(c, metric, sex, yearIndex);
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    private int firstYearWithValue(int country, int metric, int sex) {
+        for (int y = 0; y < store.yearCount(); y++) {
+            if (store.hasValue(country, metric, sex, y)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    private int lastYearWithValue(int country, int metric, int sex) {
+        for (int y = store.yearCount() - 1; y >= 0; y--) {
+            if (store.hasValue(country, metric, sex, y)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    private String metricList() {
+        List<String> names = new ArrayList<>();
+        for (int m = 0; m < store.metricCount(); m++) {
+            names.add(store.metricName(m));
+        }
+        return join(names);
+    }
+
+    // "a", "a and b", "a, b and c"
+    private static String join(List<String> items) {
+        if (items.size() < 2) {
+            return items.isEmpty() ? "" : items.get(0);
+        }
+        return String.join(", ", items.subList(0, items.size() - 1)) + " and " + items.get(items.size() - 1);
+    }
+
+    // "from 2000 to 2019", or "in 2019" when the data has a single year
+    private String years(int first, int last) {
+        return first == last ? "in " + store.year(last) : "from " + store.year(first) + " to " + store.year(last);
+    }
+
+    private static String direction(double delta) {
+        if (Math.abs(delta) < 0.05) {
+            return "held steady";
+        }
+        return delta > 0 ? "rose" : "fell";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    // The value in the indicator's unit, e.g. "81.9 years"
+    private String amount(double value) {
+        return indicator.amount(format(value));
+    }
+
+    private static String ordinal(int n) {
+        int lastTwo = n % 100;
+        if (lastTwo >= 11 && lastTwo <= 13) {
+            return n + "th";
+        }
+        switch (n % 10) {
+            case 1:
+                return n + "st";
+            case 2:
+                return n + "nd";
+            case 3:
+                return n + "rd";
+            default:
+                return n + "th";
+        }
+    }
+
+    // A story template split once into literal text and {placeholder} names
+    static final class Template {
+        private final String[] literals;
+        private final String[] names;
+
+        private Template(String[] literals, String[] names) {
+            this.literals = literals;
+            this.names = names;
+        }
+
+        static Template compile(String text) {
+            List<String> literals = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            int start = 0;
+            int open;
+            while ((open = text.indexOf('{', start)) >= 0) {
+                int close = text.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder in template: " + text);
+                }
+                literals.add(text.substring(start, open));
+                names.add(text.substring(open + 1, close));
+                start = close + 1;
+            }
+            literals.add(text.substring(start));
+            return new Template(literals.toArray(new String[0]), names.toArray(new String[0]));
+        }
+
+        String render(Map<String, String> values) {
+            StringBuilder text = new StringBuilder(128);
+            for (int i = 0; i < names.length; i++) {
+                text.append(literals[i]);
+                String value = values.get(names[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("No value for {" + names[i] + "}");
+                }
+                text.append(value);
+            }
+            return text.append(literals[names.length]).toString().trim();
+        }
+    }
+}
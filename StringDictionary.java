@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+// Dictionary encoding for key columns (country, metric, sex).
+// Each distinct string is stored once and rows only keep its int code.
+// Lookups work directly on a char range so the loader does not allocate
+// a String for values that have been seen before.
+public final class StringDictionary {
+
+    private String[] values = new String[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    // Open addressing table of (code + 1), 0 marks an empty slot
+    private int[] table = new int[32];
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int code) {
+        return values[code];
+    }
+
+    public String[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Returns the code for the value, adding it if it is new
+    public int encode(String value) {
+        char[] chars = value.toCharArray();
+        return encode(chars, 0, chars.length);
+    }
+
+    public int encode(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (hashes[code] == hash && matches(values[code], chars, offset, length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(new String(chars, offset, length), hash);
+    }
+
+    // Returns the code for the value, or -1 if it is not in the dictionary
+    public int find(String value) {
+        int hash = hash(value);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (hashes[code] == hash && values[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int add(String value, int hash) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int code = size++;
+        values[code] = value;
+        hashes[code] = hash;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(code);
+        }
+        return code;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int code = 0; code < size; code++) {
+            insert(code);
+        }
+    }
+
+    private void insert(int code) {
+        int mask = table.length - 1;
+        int slot = hashes[code] & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = code + 1;
+    }
+
+    private static boolean matches(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        return mix(h);
+    }
+
+    private static int hash(String value) {
+        return mix(value.hashCode());
+    }
+
+    // Spread the String hash so that short keys do not cluster in the table
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+}
@@ -0,0 +1,168 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+// Text field that picks one of a list of names, suggesting matches from a PrefixIndex while
+// the user types. Up/Down move through the suggestions, Enter or a click picks one and
+// Escape goes back to the current selection. Action listeners are notified only when the
+// selection changes, so the field can stand in for a combo box.
+public class TypeAheadField extends JTextField {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_SUGGESTIONS = 12;
+
+    private final DefaultListModel<String> suggestions = new DefaultListModel<>();
+    private final JList<String> suggestionList = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+    private PrefixIndex index = new PrefixIndex(List.of());
+    private String selected = "";
+
+    // Set while the text is changed by the field itself, so it does not search
+    private boolean updating;
+
+    public TypeAheadField() {
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setFocusable(false);
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = suggestionList.locationToIndex(e.getPoint());
+                if (row >= 0) {
+                    select(suggestions.get(row), true);
+                }
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(suggestionList));
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                suggest();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                suggest();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                selectAll();
+            }
+
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+                showSelected();
+            }
+        });
+
+        bind(KeyEvent.VK_DOWN, "suggestion-next", () -> moveSuggestion(1));
+        bind(KeyEvent.VK_UP, "suggestion-previous", () -> moveSuggestion(-1));
+        bind(KeyEvent.VK_ENTER, "suggestion-pick", this::pickSuggestion);
+        bind(KeyEvent.VK_ESCAPE, "suggestion-cancel", () -> {
+            popup.setVisible(false);
+            showSelected();
+        });
+    }
+
+    // Replaces the names to choose from; keeps the selection when it is still one of them
+    public void setItems(List<String> items, String selection) {
+        index = new PrefixIndex(items);
+        selected = items.contains(selection) ? selection : (items.isEmpty() ? "" : items.get(0));
+        showSelected();
+    }
+
+    public String getSelectedItem() {
+        return selected;
+    }
+
+    // Selects the name without notifying the action listeners
+    public void setSelectedItem(String item) {
+        select(item, false);
+    }
+
+    private void select(String item, boolean notify) {
+        popup.setVisible(false);
+        boolean changed = !item.equals(selected);
+        selected = item;
+        showSelected();
+        if (notify && changed) {
+            fireActionPerformed();
+        }
+    }
+
+    private void showSelected() {
+        updating = true;
+        try {
+            setText(selected);
+        } finally {
+            updating = false;
+        }
+    }
+
+    private void suggest() {
+        if (updating || !isFocusOwner()) {
+            return;
+        }
+        List<String> matches = index.search(getText(), MAX_SUGGESTIONS);
+        suggestions.clear();
+        for (String match : matches) {
+            suggestions.addElement(match);
+        }
+        if (matches.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        suggestionList.setSelectedIndex(0);
+        suggestionList.setVisibleRowCount(Math.min(matches.size(), MAX_SUGGESTIONS));
+        if (!popup.isVisible()) {
+            popup.show(this, 0, getHeight());
+        } else {
+            popup.pack();
+        }
+    }
+
+    private void moveSuggestion(int step) {
+        if (!popup.isVisible()) {
+            suggest();
+            return;
+        }
+        int row = Math.floorMod(suggestionList.getSelectedIndex() + step, suggestions.size());
+        suggestionList.setSelectedIndex(row);
+        suggestionList.ensureIndexIsVisible(row);
+    }
+
+    private void pickSuggestion() {
+        if (popup.isVisible() && suggestionList.getSelectedValue() != null) {
+            select(suggestionList.getSelectedValue(), true);
+            return;
+        }
+        List<String> matches = index.search(getText(), 1);
+        select(matches.isEmpty() ? selected : matches.get(0), true);
+    }
+
+    private void bind(int key, String name, Runnable action) {
+        getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(key, 0), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// StatisticsKernel on the incubating Vector API: the sums are kept in one vector per sum
+// across the preferred number of lanes and reduced once at the end; the tail that does not
+// fill a vector runs as scalar code. Only loaded through StatisticsKernel.get().
+final class VectorStatisticsKernel extends StatisticsKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void accumulate(double[] x, double[] y, int length, double[] sums) {
+        DoubleVector sumX = DoubleVector.zero(SPECIES);
+        DoubleVector sumY = DoubleVector.zero(SPECIES);
+        DoubleVector sumXX = DoubleVector.zero(SPECIES);
+        DoubleVector sumYY = DoubleVector.zero(SPECIES);
+        DoubleVector sumXY = DoubleVector.zero(SPECIES);
+        DoubleVector sumRatio = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector xi = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector yi = DoubleVector.fromArray(SPECIES, y, i);
+            sumX = sumX.add(xi);
+            sumY = sumY.add(yi);
+            sumXX = xi.fma(xi, sumXX);
+            sumYY = yi.fma(yi, sumYY);
+            sumXY = xi.fma(yi, sumXY);
+            sumRatio = sumRatio.add(xi.sub(yi).div(xi));
+        }
+        double tailX = 0;
+        double tailY = 0;
+        double tailXX = 0;
+        double tailYY = 0;
+        double tailXY = 0;
+        double tailRatio = 0;
+        for (; i < length; i++) {
+            tailX += x[i];
+            tailY += y[i];
+            tailXX += x[i] * x[i];
+            tailYY += y[i] * y[i];
+            tailXY += x[i] * y[i];
+            tailRatio += (x[i] - y[i]) / x[i];
+        }
+        sums[SUM_X] += sumX.reduceLanes(VectorOperators.ADD) + tailX;
+        sums[SUM_Y] += sumY.reduceLanes(VectorOperators.ADD) + tailY;
+        sums[SUM_XX] += sumXX.reduceLanes(VectorOperators.ADD) + tailXX;
+        sums[SUM_YY] += sumYY.reduceLanes(VectorOperators.ADD) + tailYY;
+        sums[SUM_XY] += sumXY.reduceLanes(VectorOperators.ADD) + tailXY;
+        sums[SUM_GAP_RATIO] += sumRatio.reduceLanes(VectorOperators.ADD) + tailRatio;
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
@@ -0,0 +1,69 @@
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
+import org.jfree.chart.plot.XYPlot;
+
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.Rectangle2D;
+
+// Keeps the DownsampledXYDatasets of a ChartPanel's chart matched to what the panel shows:
+// they are re-sampled when the domain axis is zoomed or panned and when the panel is resized.
+final class ZoomResampler extends ComponentAdapter implements AxisChangeListener {
+
+    private final ChartPanel panel;
+    private final ValueAxis domainAxis;
+
+    private ZoomResampler(ChartPanel panel, ValueAxis domainAxis) {
+        this.panel = panel;
+        this.domainAxis = domainAxis;
+    }
+
+    // Returns null when the panel's chart has no downsampled data
+    static ZoomResampler install(ChartPanel panel) {
+        if (!(panel.getChart().getPlot() instanceof XYPlot)) {
+            return null;
+        }
+        XYPlot plot = (XYPlot) panel.getChart().getPlot();
+        if (!(plot.getDataset() instanceof DownsampledXYDataset)) {
+            return null;
+        }
+        ZoomResampler resampler = new ZoomResampler(panel, plot.getDomainAxis());
+        resampler.domainAxis.addChangeListener(resampler);
+        panel.addComponentListener(resampler);
+        resampler.resample();
+        return resampler;
+    }
+
+    // Charts are cached and outlive the panel, so the axis listener has to be removed
+    void uninstall() {
+        domainAxis.removeChangeListener(this);
+        panel.removeComponentListener(this);
+    }
+
+    @Override
+    public void axisChanged(AxisChangeEvent event) {
+        resample();
+    }
+
+    @Override
+    public void componentResized(ComponentEvent event) {
+        resample();
+    }
+
+    private void resample() {
+        if (panel.getChart() != null) {
+            DownsampledXYDataset.resample(panel.getChart(), plotWidth());
+        }
+    }
+
+    // Width of the data area as last drawn; the panel width before the first paint
+    private int plotWidth() {
+        Rectangle2D area = panel.getScreenDataArea();
+        if (area.getWidth() > 0) {
+            return (int) Math.ceil(area.getWidth());
+        }
+        return panel.getWidth() > 0 ? panel.getWidth() : DownsampledXYDataset.DEFAULT_PIXEL_WIDTH;
+    }
+}
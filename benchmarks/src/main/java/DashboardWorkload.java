@@ -0,0 +1,101 @@
+import benchmarks.Workload;
+import org.jfree.chart.JFreeChart;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Workload implementation on top of the dashboard classes, see benchmarks.Workload
+public class DashboardWorkload implements Workload {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    // Rows visible in the dataset window at its default size
+    private static final int VISIBLE_ROWS = 40;
+
+    private final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    private final Rectangle area = new Rectangle(WIDTH, HEIGHT);
+
+    private DataStore store;
+    private ChartBuilder builder;
+    private DatasetTableModel tableModel;
+    private String country;
+
+    @Override
+    public void load(int countries, int years) {
+        store = SampleData.synthetic(countries, years, 42);
+        builder = new ChartBuilder(store);
+        tableModel = new DatasetTableModel(store);
+        country = store.countryName(0);
+    }
+
+    @Override
+    public Object createCountryBarChart() {
+        return builder.createCountryBarChart(country);
+    }
+
+    @Override
+    public Object createCountryLineChart() {
+        return builder.createCountryLineChart(country);
+    }
+
+    @Override
+    public Object createCountryPieChart() {
+        return builder.createCountryPieChart(country);
+    }
+
+    @Override
+    public Object createCountryScatterPlot() {
+        return builder.createCountryScatterPlot(country);
+    }
+
+    @Override
+    public Object createAllCountriesBarChart() {
+        return builder.createAllCountriesBarChart();
+    }
+
+    @Override
+    public Object createAllCountriesLineChart() {
+        return builder.createAllCountriesLineChart();
+    }
+
+    @Override
+    public Object createAllCountriesPieChart() {
+        return builder.createAllCountriesPieChart();
+    }
+
+    @Override
+    public Object createAllCountriesScatterPlot() {
+        return builder.createAllCountriesScatterPlot();
+    }
+
+    @Override
+    public Object createDatasetTableModel() {
+        DatasetTableModel model = new DatasetTableModel(store);
+        Object last = null;
+        int rows = Math.min(VISIBLE_ROWS, model.getRowCount());
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                last = model.getValueAt(row, column);
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public Object sortDatasetTableModel() {
+        tableModel.toggleSort(tableModel.getColumnCount() - store.metricCount());
+        return tableModel.getValueAt(0, 0);
+    }
+
+    @Override
+    public Object draw(Object chart) {
+        Graphics2D g2 = image.createGraphics();
+        try {
+            ((JFreeChart) chart).draw(g2, area);
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+}
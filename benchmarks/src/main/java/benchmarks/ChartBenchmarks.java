@@ -0,0 +1,113 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Chart building, dataset table and headless drawing at several synthetic dataset sizes.
+// Run through RunBenchmarks, which adds the GC profiler so allocation rates are reported.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartBenchmarks {
+
+    @Param({"4", "50", "200"})
+    public int countries;
+
+    @Param({"3", "10", "50"})
+    public int years;
+
+    private Workload workload;
+
+    // Built once per trial for the draw benchmarks
+    private Object countryLineChart;
+    private Object allCountriesBarChart;
+    private Object allCountriesScatterPlot;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create();
+        workload.load(countries, years);
+        countryLineChart = workload.createCountryLineChart();
+        allCountriesBarChart = workload.createAllCountriesBarChart();
+        allCountriesScatterPlot = workload.createAllCountriesScatterPlot();
+    }
+
+    @Benchmark
+    public Object createCountryBarChart() {
+        return workload.createCountryBarChart();
+    }
+
+    @Benchmark
+    public Object createCountryLineChart() {
+        return workload.createCountryLineChart();
+    }
+
+    @Benchmark
+    public Object createCountryPieChart() {
+        return workload.createCountryPieChart();
+    }
+
+    @Benchmark
+    public Object createCountryScatterPlot() {
+        return workload.createCountryScatterPlot();
+    }
+
+    @Benchmark
+    public Object createAllCountriesBarChart() {
+        return workload.createAllCountriesBarChart();
+    }
+
+    @Benchmark
+    public Object createAllCountriesLineChart() {
+        return workload.createAllCountriesLineChart();
+    }
+
+    @Benchmark
+    public Object createAllCountriesPieChart() {
+        return workload.createAllCountriesPieChart();
+    }
+
+    @Benchmark
+    public Object createAllCountriesScatterPlot() {
+        return workload.createAllCountriesScatterPlot();
+    }
+
+    @Benchmark
+    public Object createDatasetTableModel() {
+        return workload.createDatasetTableModel();
+    }
+
+    @Benchmark
+    public Object sortDatasetTableModel() {
+        return workload.sortDatasetTableModel();
+    }
+
+    @Benchmark
+    public Object drawCountryLineChart() {
+        return workload.draw(countryLineChart);
+    }
+
+    @Benchmark
+    public Object drawAllCountriesBarChart() {
+        return workload.draw(allCountriesBarChart);
+    }
+
+    @Benchmark
+    public Object drawAllCountriesScatterPlot() {
+        return workload.draw(allCountriesScatterPlot);
+    }
+}
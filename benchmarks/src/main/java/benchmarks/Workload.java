@@ -0,0 +1,44 @@
+package benchmarks;
+
+// The dashboard code under benchmark, seen from the benchmarks package.
+// The dashboard classes live in the default package, which named packages cannot
+// import, so DashboardWorkload implements this in the default package and the
+// benchmarks load it by name.
+public interface Workload {
+
+    // Generates the synthetic dataset; the single-country methods use its first country
+    void load(int countries, int years);
+
+    Object createCountryBarChart();
+
+    Object createCountryLineChart();
+
+    Object createCountryPieChart();
+
+    Object createCountryScatterPlot();
+
+    Object createAllCountriesBarChart();
+
+    Object createAllCountriesLineChart();
+
+    Object createAllCountriesPieChart();
+
+    Object createAllCountriesScatterPlot();
+
+    // What "View Dataset" does: build the table model and read the first screen of rows
+    Object createDatasetTableModel();
+
+    // A header click: sort the table model by the first metric column
+    Object sortDatasetTableModel();
+
+    // Draws a chart returned by one of the create methods into an 800x600 image
+    Object draw(Object chart);
+
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("DashboardWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("DashboardWorkload is not on the classpath", e);
+        }
+    }
+}